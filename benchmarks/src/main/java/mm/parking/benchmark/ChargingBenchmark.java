@@ -0,0 +1,55 @@
+package mm.parking.benchmark;
+
+import mm.parking.schedule.ChargingEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChargingBenchmark {
+    private static final int QUERIES = 1_000_000;
+    // 2026-01-01T00:00:00Z
+    private static final long FROM_MILLIS = 1767225600000L;
+
+    private ChargingEvaluator evaluator;
+    private int[] zoneIds;
+    private long[] timestamps;
+    private boolean[] result;
+
+    @Setup
+    public void setUp() {
+        SyntheticData data = new SyntheticData(42);
+        evaluator = ChargingEvaluator.of(data.workHours(10));
+        zoneIds = data.zoneIds(QUERIES);
+        timestamps = data.timestamps(QUERIES, FROM_MILLIS);
+        result = new boolean[QUERIES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public boolean[] isCharging() {
+        evaluator.isCharging(zoneIds, timestamps, result);
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int countCharging() {
+        return evaluator.countCharging(zoneIds, timestamps, 0, QUERIES);
+    }
+}
@@ -0,0 +1,76 @@
+package mm.parking.benchmark;
+
+import mm.parking.client.TableExtractor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares table extraction over a full jsoup DOM with the streaming extractor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+
+    // content blocks after the price table, 1000 is about the size of the real pages
+    @Param({ "0", "1000" })
+    private int trailingBlocks;
+
+    private String page;
+
+    @Setup
+    public void setUp() {
+        page = new SyntheticData(42).pricePage(trailingBlocks);
+    }
+
+    @Benchmark
+    public List<String[]> dom() {
+        return extractWithJsoup(page);
+    }
+
+    @Benchmark
+    public List<String[]> streaming() throws IOException {
+        return TableExtractor.extractContentTable(new StringReader(page));
+    }
+
+    /**
+     * The DOM based extraction the streaming extractor replaced.
+     */
+    static List<String[]> extractWithJsoup(String page) {
+        Document document = Jsoup.parse(page);
+        Element table = document.getElementsByClass("pageContent").get(0).getElementsByTag("table").get(0);
+        Elements rows = table.getElementsByTag("tr");
+        List<String[]> data = new ArrayList<>(rows.size());
+        rows.forEach(row -> {
+            Elements columns = row.getElementsByTag("td");
+            String[] cells = new String[columns.size()];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = columns.get(i).text();
+            }
+            data.add(cells);
+        });
+        return data;
+    }
+}
@@ -0,0 +1,70 @@
+package mm.parking.benchmark;
+
+import mm.parking.client.TableExtractor;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Differential check of the streaming extractor against jsoup: extracts the table of
+ * synthetic price pages with both and fails on the first page where the rows differ.
+ * Every page is also checked with other spellings of the container's class attribute.
+ *
+ * Run after building the benchmarks:
+ *     java -cp benchmarks/target/benchmarks.jar mm.parking.benchmark.ExtractionCheck [pages]
+ */
+public final class ExtractionCheck {
+    private static final String CLASS_ATTRIBUTE = "class=\"pageContent\"";
+    private static final String[] CLASS_SPELLINGS = {
+            CLASS_ATTRIBUTE, "class = \"pageContent\"", "class=pageContent", "CLASS='pageContent'",
+            "class =\n\t'pageContent' ", "data-x class=\"pageContent other\"", "hidden class=pageContent"
+    };
+
+    private ExtractionCheck() {
+
+    }
+
+    public static void main(String[] args) throws IOException {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        int checked = 0;
+        for (int seed = 0; seed < pages; seed++) {
+            String page = new SyntheticData(seed).pricePage(seed % 20);
+            for (String spelling : CLASS_SPELLINGS) {
+                String variant = page.replace(CLASS_ATTRIBUTE, spelling);
+                List<String[]> expected = ExtractionBenchmark.extractWithJsoup(variant);
+                List<String[]> actual = TableExtractor.extractContentTable(new StringReader(variant));
+                if (!equals(expected, actual)) {
+                    System.out.println("Extracted rows differ for seed " + seed + " and " + spelling);
+                    System.out.println("jsoup:     " + toString(expected));
+                    System.out.println("streaming: " + toString(actual));
+                    System.exit(1);
+                }
+                checked++;
+            }
+        }
+        System.out.printf("Checked %d pages, the streaming extractor matches jsoup.\n", checked);
+    }
+
+    private static boolean equals(List<String[]> expected, List<String[]> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!Arrays.equals(expected.get(i), actual.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toString(List<String[]> rows) {
+        StringBuilder sb = new StringBuilder();
+        for (String[] row : rows) {
+            sb.append(Arrays.toString(row));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package mm.parking.benchmark;
+
+import mm.parking.schedule.ChargingEvaluator;
+import mm.parking.schedule.FeeCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeeBenchmark {
+    // 2026-01-01T00:00:00Z
+    private static final long FROM_MILLIS = 1767225600000L;
+
+    @Param({ "10000", "1000000" })
+    private int sessions;
+
+    private FeeCalculator calculator;
+    private int[] zoneIds;
+    private long[] starts;
+    private long[] ends;
+    private double[] fees;
+
+    @Setup
+    public void setUp() {
+        SyntheticData data = new SyntheticData(42);
+        calculator = FeeCalculator.of(data.prices(10), ChargingEvaluator.of(data.workHours(10)));
+        zoneIds = data.zoneIds(sessions);
+        starts = data.timestamps(sessions, FROM_MILLIS);
+        ends = data.sessionEnds(starts, 8 * 60);
+        fees = new double[sessions];
+    }
+
+    @Benchmark
+    public double[] computeFees() {
+        calculator.computeFees(zoneIds, starts, ends, fees);
+        return fees;
+    }
+}
@@ -0,0 +1,132 @@
+package mm.parking.benchmark;
+
+import mm.parking.client.HttpCache;
+import mm.parking.client.Transport;
+import mm.parking.client.TransportResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Checks the conditional requests of {@link HttpCache} against a stub transport: the
+ * validators sent, the body returned for 200 and 304 responses, that fresh entries make
+ * no request and that failed responses leave the cache alone. Exits with 1 on the first
+ * failed check.
+ *
+ * Run after building the benchmarks:
+ *     java -cp benchmarks/target/benchmarks.jar mm.parking.benchmark.HttpCacheCheck
+ */
+public final class HttpCacheCheck {
+    private static final String URL = "http://example.com/default.aspx?id=55";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Wed, 01 May 2019 10:00:00 GMT";
+
+    private final List<Map<String, String>> requests = new ArrayList<>();
+    private TransportResponse next;
+
+    private HttpCacheCheck() {
+
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("http-cache-check");
+        try {
+            new HttpCacheCheck().run(dir);
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+        System.out.println("HttpCache checks passed.");
+    }
+
+    private void run(Path dir) throws IOException {
+        Transport transport = (url, headers) -> {
+            requests.add(new HashMap<>(headers));
+            return CompletableFuture.completedFuture(next);
+        };
+        HttpCache cache = new HttpCache(dir, Duration.ZERO, transport);
+
+        // 200 on an empty cache is returned and stored with its validators
+        Map<String, List<String>> validators = new HashMap<>();
+        validators.put("ETag", Collections.singletonList(ETAG));
+        validators.put("Last-Modified", Collections.singletonList(LAST_MODIFIED));
+        respond(200, validators, "<p>first</p>");
+        check(cache.fetch(URL).equals("<p>first</p>"), "200 body returned");
+        check(lastRequest().isEmpty(), "no validators sent for an uncached page, got " + lastRequest());
+        check(fileCount(dir) == 2, "body and validators written, found " + fileCount(dir) + " files");
+
+        // 304 reuses the stored body, the validators are sent back
+        respond(304, Collections.emptyMap(), "");
+        check(cache.fetch(URL).equals("<p>first</p>"), "304 returns the cached body");
+        check(ETAG.equals(lastRequest().get("If-None-Match")), "If-None-Match sent, got " + lastRequest());
+        check(LAST_MODIFIED.equals(lastRequest().get("If-Modified-Since")),
+                "If-Modified-Since sent, got " + lastRequest());
+
+        // 200 replaces the stored body, a response without validators removes them
+        respond(200, Collections.emptyMap(), "<p>second</p>");
+        check(cache.fetch(URL).equals("<p>second</p>"), "new 200 body returned");
+        respond(304, Collections.emptyMap(), "");
+        check(cache.fetch(URL).equals("<p>second</p>"), "304 returns the replaced body");
+        check(lastRequest().isEmpty(), "no stale validators sent, got " + lastRequest());
+
+        // an error neither returns nor replaces the stored body
+        respond(500, Collections.emptyMap(), "<p>error</p>");
+        boolean failed = false;
+        try {
+            cache.fetch(URL);
+        } catch (IOException e) {
+            failed = true;
+        }
+        check(failed, "500 fails the fetch");
+        respond(304, Collections.emptyMap(), "");
+        check(cache.fetch(URL).equals("<p>second</p>"), "500 keeps the cached body");
+
+        // an entry younger than max age is served without a request
+        int sent = requests.size();
+        HttpCache freshCache = new HttpCache(dir, Duration.ofHours(1), transport);
+        check(freshCache.fetch(URL).equals("<p>second</p>"), "fresh entry returned");
+        check(requests.size() == sent, "fresh entry makes no request");
+
+        // the other urls are not affected by the cached one
+        respond(200, Collections.emptyMap(), "<p>other</p>");
+        check(freshCache.fetch(URL + "1").equals("<p>other</p>"), "uncached url is requested");
+        check(requests.size() == sent + 1, "uncached url makes one request");
+    }
+
+    private void respond(int status, Map<String, List<String>> headers, String body) {
+        Map<String, List<String>> allHeaders = new HashMap<>(headers);
+        allHeaders.put("Content-Type", Collections.singletonList("text/html; charset=UTF-8"));
+        next = new TransportResponse(URL, status, allHeaders, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, String> lastRequest() {
+        return requests.get(requests.size() - 1);
+    }
+
+    private static long fileCount(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            System.out.println("Check failed: " + description);
+            System.exit(1);
+        }
+    }
+}
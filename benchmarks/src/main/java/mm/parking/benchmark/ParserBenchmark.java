@@ -0,0 +1,62 @@
+package mm.parking.benchmark;
+
+import mm.parking.ParkingLocation;
+import mm.parking.ParkingPrice;
+import mm.parking.ParkingTime;
+import mm.parking.parser.ParkingParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    // 10 = real price/work hours tables, 5000 = real location list
+    @Param({ "10", "5000", "1000000" })
+    private int rows;
+
+    private ParkingParser parser;
+    private List<String[]> priceRows;
+    private List<String[]> workHourRows;
+    private List<String[]> locationRows;
+
+    @Setup
+    public void setUp() {
+        SyntheticData data = new SyntheticData(42);
+        parser = new ParkingParser();
+        priceRows = data.priceRows(rows);
+        workHourRows = data.workHourRows(rows);
+        locationRows = data.locationRows(rows);
+    }
+
+    @Benchmark
+    public List<ParkingPrice> parsePrices() {
+        return parser.parseParkingPrices(priceRows);
+    }
+
+    @Benchmark
+    public List<ParkingTime> parseWorkHours() {
+        return parser.parseParkingWorkHours(workHourRows);
+    }
+
+    @Benchmark
+    public List<ParkingLocation> parseLocations() {
+        return parser.parseParkingLocations(locationRows);
+    }
+}
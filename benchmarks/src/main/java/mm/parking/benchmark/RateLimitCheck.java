@@ -0,0 +1,219 @@
+package mm.parking.benchmark;
+
+import mm.parking.client.RateLimitedTransport;
+import mm.parking.client.Transport;
+import mm.parking.client.TransportResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks {@link RateLimitedTransport} against a stub transport that records when every
+ * request is sent and answered and how many are in flight: the request rate stays within
+ * the token bucket, in-flight requests never exceed the ceiling, 429/5xx responses and
+ * errors are retried at most max retries times and a retry waits at least Retry-After.
+ * Exits with 1 on the first failed check.
+ *
+ * Run after building the benchmarks:
+ *     java -cp benchmarks/target/benchmarks.jar mm.parking.benchmark.RateLimitCheck
+ */
+public final class RateLimitCheck {
+    private static final int REQUESTS = 100;
+    private static final int MAX_CONCURRENCY = 4;
+    private static final int MAX_RETRIES = 3;
+    private static final double REQUESTS_PER_SECOND = 50;
+    private static final double BURST = 5;
+    private static final long LATENCY_MILLIS = 20;
+    private static final long RETRY_AFTER_SECONDS = 1;
+
+    // guarded by this
+    private final Map<String, List<Long>> sent = new HashMap<>();
+    private final Map<String, List<Long>> answered = new HashMap<>();
+    private final List<Long> allSent = new ArrayList<>();
+    private int inFlight;
+    private int maxInFlight;
+
+    private RateLimitCheck() {
+
+    }
+
+    public static void main(String[] args) {
+        checkDefaultCeiling();
+        new RateLimitCheck().checkConcurrency();
+        new RateLimitCheck().checkRate();
+        new RateLimitCheck().checkRetries();
+        System.out.println("RateLimitedTransport checks passed.");
+    }
+
+    private static void checkDefaultCeiling() {
+        RateLimitedTransport transport = RateLimitedTransport.Builder.newBuilder()
+                .transport((url, headers) -> CompletableFuture.failedFuture(new IOException("unused")))
+                .build();
+        check(transport.getConcurrencyLimit() == RateLimitedTransport.DEFAULT_MAX_CONCURRENCY,
+                "default ceiling is " + RateLimitedTransport.DEFAULT_MAX_CONCURRENCY + ", got "
+                        + transport.getConcurrencyLimit());
+    }
+
+    private void checkConcurrency() {
+        RateLimitedTransport transport = RateLimitedTransport.Builder.newBuilder()
+                .transport(stub())
+                .maxConcurrency(MAX_CONCURRENCY)
+                .build();
+        List<TransportResponse> responses = sendAll(transport, "ok", REQUESTS);
+
+        check(responses.stream().allMatch(response -> response.getStatusCode() == 200), "all requests succeed");
+        check(maxInFlight <= MAX_CONCURRENCY, "at most " + MAX_CONCURRENCY + " in flight, saw " + maxInFlight);
+        check(maxInFlight == MAX_CONCURRENCY, "requests run up to the ceiling, saw at most " + maxInFlight);
+        checkAttempts("ok", REQUESTS, 1);
+    }
+
+    private void checkRate() {
+        RateLimitedTransport transport = RateLimitedTransport.Builder.newBuilder()
+                .transport(stub())
+                .requestsPerSecond(REQUESTS_PER_SECOND, BURST)
+                .maxConcurrency(MAX_CONCURRENCY)
+                .build();
+        sendAll(transport, "ok", REQUESTS);
+
+        List<Long> times;
+        synchronized (this) {
+            times = new ArrayList<>(allSent);
+        }
+        Collections.sort(times);
+        // any n consecutive requests need the burst plus the tokens refilled between them
+        for (int from = 0; from < times.size(); from++) {
+            for (int to = from; to < times.size(); to++) {
+                double seconds = (times.get(to) - times.get(from)) / 1e9;
+                double allowed = BURST + seconds * REQUESTS_PER_SECOND;
+                int count = to - from + 1;
+                // one token of slack for the rounding of the delays to whole nanoseconds
+                check(count <= allowed + 1, count + " requests sent within " + seconds + " s, allowed "
+                        + allowed);
+            }
+        }
+        double elapsed = (times.get(times.size() - 1) - times.get(0)) / 1e9;
+        double minimum = (REQUESTS - BURST) / REQUESTS_PER_SECOND;
+        check(elapsed >= minimum - 1 / REQUESTS_PER_SECOND,
+                REQUESTS + " requests took " + elapsed + " s, expected at least " + minimum);
+    }
+
+    private void checkRetries() {
+        RateLimitedTransport transport = RateLimitedTransport.Builder.newBuilder()
+                .transport(stub())
+                .maxConcurrency(MAX_CONCURRENCY)
+                .maxRetries(MAX_RETRIES)
+                .backoff(Duration.ofMillis(10), Duration.ofSeconds(2))
+                .build();
+
+        // answered with 503 once, then 200
+        List<TransportResponse> flaky = sendAll(transport, "flaky", 10);
+        check(flaky.stream().allMatch(response -> response.getStatusCode() == 200), "flaky requests succeed");
+        checkAttempts("flaky", 10, 2);
+
+        // fails with an IOException once, then 200
+        List<TransportResponse> broken = sendAll(transport, "io", 10);
+        check(broken.stream().allMatch(response -> response.getStatusCode() == 200), "requests succeed after an error");
+        checkAttempts("io", 10, 2);
+
+        // always 503, the last response is returned after max retries
+        List<TransportResponse> failing = sendAll(transport, "fail", 10);
+        check(failing.stream().allMatch(response -> response.getStatusCode() == 503), "failing requests return 503");
+        checkAttempts("fail", 10, 1 + MAX_RETRIES);
+
+        // 429 with Retry-After once, then 200
+        List<TransportResponse> throttled = sendAll(transport, "throttled", 3);
+        check(throttled.stream().allMatch(response -> response.getStatusCode() == 200), "throttled requests succeed");
+        checkAttempts("throttled", 3, 2);
+        synchronized (this) {
+            for (int i = 0; i < 3; i++) {
+                String url = "throttled/" + i;
+                long waited = sent.get(url).get(1) - answered.get(url).get(0);
+                check(waited >= TimeUnit.SECONDS.toNanos(RETRY_AFTER_SECONDS),
+                        url + " retried after " + waited / 1e6 + " ms, Retry-After is " + RETRY_AFTER_SECONDS + " s");
+            }
+        }
+    }
+
+    private List<TransportResponse> sendAll(Transport transport, String kind, int count) {
+        List<CompletableFuture<TransportResponse>> pending = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pending.add(transport.fetch(kind + "/" + i, Collections.emptyMap()));
+        }
+
+        List<TransportResponse> responses = new ArrayList<>(count);
+        for (CompletableFuture<TransportResponse> response : pending) {
+            try {
+                responses.add(response.join());
+            } catch (CompletionException e) {
+                check(false, kind + " request failed: " + e.getCause());
+            }
+        }
+        return responses;
+    }
+
+    private synchronized void checkAttempts(String kind, int count, int expected) {
+        for (int i = 0; i < count; i++) {
+            String url = kind + "/" + i;
+            int attempts = sent.get(url).size();
+            check(attempts == expected, url + " sent " + attempts + " times, expected " + expected);
+            check(attempts <= 1 + MAX_RETRIES, url + " retried more than " + MAX_RETRIES + " times");
+        }
+    }
+
+    /**
+     * Answers after a fixed latency, how depends on the first part of the url and on the
+     * number of earlier attempts.
+     */
+    private Transport stub() {
+        return (url, headers) -> {
+            int attempt;
+            synchronized (this) {
+                long now = System.nanoTime();
+                List<Long> times = sent.computeIfAbsent(url, key -> new ArrayList<>());
+                times.add(now);
+                allSent.add(now);
+                attempt = times.size();
+                maxInFlight = Math.max(maxInFlight, ++inFlight);
+            }
+
+            CompletableFuture<TransportResponse> response = new CompletableFuture<>();
+            CompletableFuture.delayedExecutor(LATENCY_MILLIS, TimeUnit.MILLISECONDS).execute(() -> {
+                synchronized (this) {
+                    inFlight--;
+                    answered.computeIfAbsent(url, key -> new ArrayList<>()).add(System.nanoTime());
+                }
+                String kind = url.substring(0, url.indexOf('/'));
+                if (kind.equals("io") && attempt == 1) {
+                    response.completeExceptionally(new IOException("Connection reset"));
+                } else if (kind.equals("fail") || kind.equals("flaky") && attempt == 1) {
+                    response.complete(respond(url, 503, Collections.emptyMap()));
+                } else if (kind.equals("throttled") && attempt == 1) {
+                    response.complete(respond(url, 429, Collections.singletonMap("Retry-After",
+                            Collections.singletonList(String.valueOf(RETRY_AFTER_SECONDS)))));
+                } else {
+                    response.complete(respond(url, 200, Collections.emptyMap()));
+                }
+            });
+            return response;
+        };
+    }
+
+    private static TransportResponse respond(String url, int status, Map<String, List<String>> headers) {
+        return new TransportResponse(url, status, headers, new byte[0]);
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            System.out.println("Check failed: " + description);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package mm.parking.benchmark;
+
+import mm.parking.ParkingLocation;
+import mm.parking.ParkingPrice;
+import mm.parking.ParkingTime;
+import mm.parking.storage.FileStorage;
+import mm.parking.storage.JsonStorage;
+import mm.parking.storage.SnapshotStorage;
+import mm.parking.storage.TextStorage;
+import mm.parking.storage.XmlStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBenchmark {
+
+    @Param({ "xml", "json", "json-compact", "raw", "bin" })
+    private String format;
+
+    @Param({ "10", "5000", "1000000" })
+    private int rows;
+
+    private Path dir;
+    private FileStorage storage;
+    private List<ParkingPrice> prices;
+    private List<ParkingTime> workHours;
+    private List<ParkingLocation> locations;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("parking-bench");
+        String dirPath = dir.toString() + File.separator;
+        switch (format) {
+            case "xml":
+                storage = new XmlStorage(dirPath);
+                break;
+            case "json":
+                storage = new JsonStorage(dirPath, false);
+                break;
+            case "json-compact":
+                storage = new JsonStorage(dirPath, true);
+                break;
+            case "raw":
+                storage = new TextStorage(dirPath);
+                break;
+            case "bin":
+                storage = new SnapshotStorage(dirPath);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+
+        SyntheticData data = new SyntheticData(42);
+        prices = data.prices(rows);
+        workHours = data.workHours(rows);
+        locations = data.locations(rows);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void storePrices() throws IOException {
+        storage.storePrices(prices, "prices");
+    }
+
+    @Benchmark
+    public void storeWorkHours() throws IOException {
+        storage.storeWorkHours(workHours, "work_hours");
+    }
+
+    @Benchmark
+    public void storeLocations() throws IOException {
+        storage.storeLocations(locations, "locations");
+    }
+}
@@ -0,0 +1,196 @@
+package mm.parking.benchmark;
+
+import mm.parking.ParkingLocation;
+import mm.parking.ParkingPrice;
+import mm.parking.ParkingTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates table rows in the same shape as the rows ParkingClient extracts from
+ * zagrebparking.hr, and the parsed models built from them. The real tables have
+ * about 10 price and work hours rows and a few thousand locations, the generator
+ * scales the same shapes up to any row count.
+ */
+public final class SyntheticData {
+    private static final String[] ZONES = {
+            "I. zona", "I.1. zona", "I.2. zona", "II.1. zona", "II.2. zona",
+            "II.3. zona", "III. zona", "III. zona Sesvete", "IV.1. zona", "IV.2. zona"
+    };
+    private static final String[] LOCATION_ZONES = {
+            "Zona 1", "Zona 1.1", "Zona 1.2", "Zona 2.1", "Zona 2.2",
+            "Zona 2.3", "Zona 3", "Zona 3 Sesvete", "Zona 4.1", "Zona 4.2"
+    };
+    private static final String[] STREETS = {
+            "Ilica", "Vlaška ulica", "Savska cesta", "Ulica kneza Mislava", "Trg bana Josipa Jelačića",
+            "Draškovićeva ulica", "Ulica Frana Petrića", "Palmotićeva ulica", "Zagrebačka avenija"
+    };
+    private static final String[] HOURS = {
+            "07:00 - 21:00", "07:00 - 20:00", "07:00 - 16:00", "08:00 - 15:00"
+    };
+
+    private final Random random;
+
+    public SyntheticData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return header row followed by rows of price data
+     */
+    public List<String[]> priceRows(int count) {
+        List<String[]> rows = new ArrayList<>(count + 1);
+        rows.add(new String[] { "Zona", "Broj", "Cijena", "Dnevna karta", "Ograničenje" });
+        for (int i = 0; i < count; i++) {
+            String zone = ZONES[i % ZONES.length];
+            switch (random.nextInt(4)) {
+                case 0:
+                    rows.add(new String[] { zone, "/", "/", amount() + " kn", "/" });
+                    break;
+                case 1:
+                    rows.add(new String[] { zone, phone(), amount() + " kn/h", amount() + " kn", "nije ograničeno" });
+                    break;
+                default:
+                    rows.add(new String[] { zone, phone(), amount() + " kn/h", amount() + " kn", (1 + random.nextInt(4)) + "h" });
+                    break;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return header row, rows of work hours data and a trailing garage row
+     */
+    public List<String[]> workHourRows(int count) {
+        List<String[]> rows = new ArrayList<>(count + 2);
+        rows.add(new String[] { "Zona", "Radni dan", "Subota", "Nedjelja i blagdan" });
+        for (int i = 0; i < count; i++) {
+            String saturday = random.nextBoolean() ? HOURS[random.nextInt(HOURS.length)] : "nema naplate";
+            rows.add(new String[] { ZONES[i % ZONES.length], HOURS[random.nextInt(HOURS.length)], saturday, "nema naplate" });
+        }
+        rows.add(new String[] { "Garaže", "00:00 - 24:00", "00:00 - 24:00", "00:00 - 24:00" });
+        return rows;
+    }
+
+    /**
+     * @return [zone, address] rows
+     */
+    public List<String[]> locationRows(int count) {
+        List<String[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String address = STREETS[random.nextInt(STREETS.length)] + " " + (1 + random.nextInt(200));
+            rows.add(new String[] { LOCATION_ZONES[i * LOCATION_ZONES.length / count], address });
+        }
+        return rows;
+    }
+
+    public List<ParkingPrice> prices(int count) {
+        List<ParkingPrice> prices = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            prices.add(ParkingPrice.Builder.newBuilder()
+                    .zone(ZONES[i % ZONES.length])
+                    .phoneNumber(phone())
+                    .hourlyPrice(random.nextInt(2000) / 100.0)
+                    .dailyPrice(random.nextInt(20000) / 100.0)
+                    .maxHours(1 + random.nextInt(4))
+                    .build());
+        }
+        return prices;
+    }
+
+    public List<ParkingTime> workHours(int count) {
+        List<ParkingTime> workHours = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            workHours.add(ParkingTime.Builder.newBuilder()
+                    .zone(ZONES[i % ZONES.length])
+                    .workDayHours(HOURS[random.nextInt(HOURS.length)])
+                    .saturdayHours(random.nextBoolean() ? HOURS[random.nextInt(HOURS.length)] : "free")
+                    .sundayHolidayHours("free")
+                    .build());
+        }
+        return workHours;
+    }
+
+    public List<ParkingLocation> locations(int count) {
+        List<ParkingLocation> locations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            locations.add(ParkingLocation.Builder.newBuilder()
+                    .zone(LOCATION_ZONES[i * LOCATION_ZONES.length / count])
+                    .city("Zagreb")
+                    .address(STREETS[random.nextInt(STREETS.length)] + " " + (1 + random.nextInt(200)))
+                    .build());
+        }
+        return locations;
+    }
+
+    /**
+     * @return canonical zone ids of the known zones, one per entry
+     */
+    public int[] zoneIds(int count) {
+        int[] zoneIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            zoneIds[i] = 1 + random.nextInt(ZONES.length);
+        }
+        return zoneIds;
+    }
+
+    /**
+     * @return epoch millis spread over one year starting at {@code fromMillis}
+     */
+    public long[] timestamps(int count, long fromMillis) {
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = fromMillis + (long) (random.nextDouble() * 365L * 24 * 60 * 60 * 1000);
+        }
+        return timestamps;
+    }
+
+    /**
+     * @return session ends between 0 and {@code maxMinutes} after the given starts
+     */
+    public long[] sessionEnds(long[] starts, int maxMinutes) {
+        long[] ends = new long[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            ends[i] = starts[i] + random.nextInt(maxMinutes * 60) * 1000L;
+        }
+        return ends;
+    }
+
+    /**
+     * @return a page shaped like the price page: navigation and scripts before the
+     * pageContent div, the price table, then {@code trailingBlocks} blocks of other content
+     */
+    public String pricePage(int trailingBlocks) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Zagreb parking</title>");
+        html.append("<script type=\"text/javascript\">var menu = { open: function (a, b) { return a < b; } };</script>");
+        html.append("</head><body><div id=\"header\"><ul class=\"menu\">");
+        for (int i = 0; i < 50; i++) {
+            html.append("<li><a href=\"default.aspx?id=").append(i).append("\">Stavka ").append(i).append("</a></li>");
+        }
+        html.append("</ul></div><div class=\"pageContent\"><h1>Cijene</h1><table border=\"1\">");
+        for (String[] row : priceRows(ZONES.length)) {
+            html.append("<tr>");
+            for (String cell : row) {
+                html.append("<td><p>").append(cell.replace("\u010d", "&#269;")).append("</p></td>");
+            }
+            html.append("</tr>");
+        }
+        html.append("</table>");
+        for (int i = 0; i < trailingBlocks; i++) {
+            html.append("<div class=\"news\"><h2>Obavijest ").append(i).append("</h2><p>")
+                    .append(STREETS[i % STREETS.length]).append(" &nbsp; <a href=\"#\">vi&scaron;e</a></p></div>");
+        }
+        html.append("</div></body></html>");
+        return html.toString();
+    }
+
+    private String amount() {
+        return random.nextInt(200) + "," + String.format("%02d", random.nextInt(100));
+    }
+
+    private String phone() {
+        return String.valueOf(700100 + random.nextInt(20));
+    }
+}
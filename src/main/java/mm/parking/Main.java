@@ -1,24 +1,73 @@
 package mm.parking;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import mm.parking.cli.Argument;
 import mm.parking.cli.CommandLine;
+import mm.parking.client.HttpCache;
+import mm.parking.client.HttpClientTransport;
+import mm.parking.client.MeteredTransport;
 import mm.parking.client.ParkingClient;
+import mm.parking.client.RateLimitedTransport;
+import mm.parking.client.Transport;
+import mm.parking.history.HistoryLog;
+import mm.parking.index.AddressIndex;
+import mm.parking.metrics.RunMetrics;
 import mm.parking.parser.ParkingParser;
-import mm.parking.storage.FileStorage;
+import mm.parking.replay.ArchiveReplay;
+import mm.parking.replay.ArchivedPage;
+import mm.parking.server.QueryServer;
+import mm.parking.server.ResponseCache;
+import mm.parking.source.CrawlScheduler;
+import mm.parking.source.SourceConfig;
+import mm.parking.source.SourceDescriptor;
+import mm.parking.storage.FingerprintStore;
 import mm.parking.storage.JsonStorage;
+import mm.parking.storage.MultiFormatStorage;
+import mm.parking.storage.SnapshotStorage;
 import mm.parking.storage.TextStorage;
 import mm.parking.storage.XmlStorage;
+import mm.parking.watch.DatasetWatcher;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class Main {
     private static final String ARGUMENT_DATA_TYPE = "datatype";
     private static final String ARGUMENT_FILE_FORMAT = "format";
     private static final String ARGUMENT_DIR_PATH = "dir";
+    private static final String ARGUMENT_CONNECTIONS = "connections";
+    private static final String ARGUMENT_CACHE_DIR = "cache";
+    private static final String ARGUMENT_CACHE_MAX_AGE = "maxage";
+    private static final String ARGUMENT_CONNECT_TIMEOUT = "connecttimeout";
+    private static final String ARGUMENT_READ_TIMEOUT = "readtimeout";
+    private static final String ARGUMENT_RATE_LIMIT = "ratelimit";
+    private static final String ARGUMENT_RETRIES = "retries";
+    private static final String ARGUMENT_COMPACT = "compact";
+    private static final String ARGUMENT_WATCH = "watch";
+    private static final String ARGUMENT_SERVE = "serve";
+    private static final String ARGUMENT_SERVER_THREADS = "serverthreads";
+    private static final String ARGUMENT_HISTORY = "history";
+    private static final String ARGUMENT_METRICS = "metrics";
+    private static final String ARGUMENT_REPLAY = "replay";
+    private static final String ARGUMENT_SOURCES = "sources";
     private static final String ARGUMENT_HELP = "help";
 
     private static final String DATA_TYPE_TARGET_PRICE = "price";
@@ -26,14 +75,46 @@ public class Main {
     private static final String DATA_TYPE_TARGET_LOCATION = "location";
     private static final String DATA_TYPE_TARGET_ALL = "all";
 
+    private static final String FILENAME_PRICES = "prices";
+    private static final String FILENAME_WORK_HOURS = "work_hours";
+    private static final String FILENAME_LOCATIONS = "locations";
+
+    private static final String HISTORY_DIR = "history";
+
+    private static final String FINGERPRINT_PRICES = "price";
+    private static final String FINGERPRINT_WORK_HOURS = "time";
+    private static final String FINGERPRINT_LOCATIONS = "location";
+
+    private static final int PIPELINE_THREAD_COUNT = 3;
+
     private static final String HELP_PRINTOUT_FORMAT = "%-12s %-35s %-50s\n";
 
     private static ParkingClient parkingClient;
     private static ParkingParser parkingParser;
 
-    private static FileStorage xmlStorage;
-    private static FileStorage jsonStorage;
-    private static FileStorage textStorage;
+    private static ExecutorService storageExecutor;
+    // only set in --sources mode, shared by the HTTP client and parsing/storing
+    private static ExecutorService crawlExecutor;
+    private static MultiFormatStorage fileStorage;
+    private static FingerprintStore fingerprints;
+
+    // parsed locations per zone from the previous refresh, reused while the zone is unchanged
+    private static final Map<String, List<ParkingLocation>> previousZoneLocations = new ConcurrentHashMap<>();
+
+    // rebuilt and swapped every time the locations change
+    private static volatile AddressIndex addressIndex;
+
+    // only set in --serve mode
+    private static ResponseCache responses;
+
+    // only set in --metrics mode
+    private static RunMetrics metrics;
+    private static Path metricsDir;
+
+    // only set in --history mode
+    private static HistoryLog<ParkingPrice> priceHistory;
+    private static HistoryLog<ParkingTime> workHoursHistory;
+    private static HistoryLog<ParkingLocation> locationHistory;
 
     public static void main(String[] args) {
         List<Argument> arguments = createArguments();
@@ -59,7 +140,7 @@ public class Main {
             List<String> fileFormats = cli.getArgumentTarget(ARGUMENT_FILE_FORMAT);
             if (fileFormats.isEmpty()) {
                 System.out.printf("--%s not set, using default - all.\n", ARGUMENT_FILE_FORMAT);
-                fileFormats.add("all");
+                fileFormats = List.of("all");
             } else {
                 for (String format : fileFormats) {
                     System.out.println("Output file format: " + format);
@@ -83,161 +164,733 @@ public class Main {
                 System.out.println("Output directory: " + dirPath);
             }
 
-            System.out.println("Parsing arguments done.");
+            int maxConnections = ParkingClient.DEFAULT_MAX_CONCURRENT_REQUESTS;
+            List<String> connectionsTarget = cli.getArgumentTarget(ARGUMENT_CONNECTIONS);
+            if (!connectionsTarget.isEmpty()) {
+                // only one target is expected
+                try {
+                    maxConnections = Integer.parseInt(connectionsTarget.get(0));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Not a number: " + connectionsTarget.get(0));
+                }
+
+                System.out.println("Max concurrent connections: " + maxConnections);
+            }
+
+            Duration connectTimeout = HttpClientTransport.DEFAULT_CONNECT_TIMEOUT;
+            List<String> connectTimeoutTarget = cli.getArgumentTarget(ARGUMENT_CONNECT_TIMEOUT);
+            if (!connectTimeoutTarget.isEmpty()) {
+                connectTimeout = Duration.ofSeconds(parseNumber(connectTimeoutTarget.get(0)));
+            }
+
+            Duration readTimeout = HttpClientTransport.DEFAULT_READ_TIMEOUT;
+            List<String> readTimeoutTarget = cli.getArgumentTarget(ARGUMENT_READ_TIMEOUT);
+            if (!readTimeoutTarget.isEmpty()) {
+                readTimeout = Duration.ofSeconds(parseNumber(readTimeoutTarget.get(0)));
+            }
+
+            if (connectTimeout.isZero() || connectTimeout.isNegative() || readTimeout.isZero() || readTimeout.isNegative()) {
+                throw new IllegalArgumentException("Timeouts must be positive");
+            }
 
-            Gson gson = new GsonBuilder()
-                    .setPrettyPrinting()
-                    .create();
+            double rateLimit = RateLimitedTransport.UNLIMITED_RATE;
+            List<String> rateLimitTarget = cli.getArgumentTarget(ARGUMENT_RATE_LIMIT);
+            if (!rateLimitTarget.isEmpty()) {
+                // only one target is expected
+                try {
+                    rateLimit = Double.parseDouble(rateLimitTarget.get(0));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Not a number: " + rateLimitTarget.get(0));
+                }
+                if (!(rateLimit > 0)) {
+                    throw new IllegalArgumentException("Rate limit must be positive: " + rateLimit);
+                }
+                System.out.println("Max requests per second: " + rateLimit);
+            }
+
+            int retries = RateLimitedTransport.DEFAULT_MAX_RETRIES;
+            List<String> retriesTarget = cli.getArgumentTarget(ARGUMENT_RETRIES);
+            if (!retriesTarget.isEmpty()) {
+                retries = parseNumber(retriesTarget.get(0));
+                if (retries < 0) {
+                    throw new IllegalArgumentException("Retries must not be negative: " + retries);
+                }
+            }
+
+            List<String> metricsTarget = cli.getArgumentTarget(ARGUMENT_METRICS);
+            if (!metricsTarget.isEmpty()) {
+                // only one target is expected
+                metricsDir = Paths.get(metricsTarget.get(0));
+                if (!metricsDir.toFile().isDirectory()) {
+                    System.out.println("Not a directory: " + metricsDir);
+                    System.exit(-1);
+                }
+                metrics = new RunMetrics();
+                System.out.println("Metrics directory: " + metricsDir);
+            }
+
+            List<SourceDescriptor> sources = null;
+            List<String> sourcesTarget = cli.getArgumentTarget(ARGUMENT_SOURCES);
+            if (!sourcesTarget.isEmpty()) {
+                // only one target is expected
+                try {
+                    sources = SourceConfig.load(Paths.get(sourcesTarget.get(0)));
+                } catch (IOException e) {
+                    System.out.println("Error occurred: " + e.getMessage());
+                    System.exit(-1);
+                }
+                for (SourceDescriptor source : sources) {
+                    System.out.println("Source: " + source);
+                }
+                crawlExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+            }
+
+            // one transport for all requests, so that connections are reused
+            Transport sharedTransport = new HttpClientTransport(connectTimeout, readTimeout, crawlExecutor);
+            if (metrics != null) {
+                sharedTransport = new MeteredTransport(sharedTransport, metrics);
+            }
+            // wraps the metered transport, so every retry shows up in the metrics. The pipelines
+            // run concurrently and the locations pipeline alone sends up to maxConnections
+            // requests, so the ceiling leaves room for all of them
+            Transport transport = RateLimitedTransport.Builder.newBuilder()
+                    .transport(sharedTransport)
+                    .requestsPerSecond(rateLimit, maxConnections)
+                    .maxConcurrency(maxConcurrency(maxConnections))
+                    .maxRetries(retries)
+                    .build();
+
+            HttpCache cache = null;
+            Path cacheDir = null;
+            Duration maxAge = Duration.ZERO;
+            List<String> cacheTarget = cli.getArgumentTarget(ARGUMENT_CACHE_DIR);
+            if (!cacheTarget.isEmpty()) {
+                // only one target is expected
+                List<String> maxAgeTarget = cli.getArgumentTarget(ARGUMENT_CACHE_MAX_AGE);
+                if (!maxAgeTarget.isEmpty()) {
+                    try {
+                        maxAge = Duration.ofSeconds(Long.parseLong(maxAgeTarget.get(0)));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Not a number: " + maxAgeTarget.get(0));
+                    }
+                }
+
+                cacheDir = Paths.get(cacheTarget.get(0));
+                cache = new HttpCache(cacheDir, maxAge, transport);
+                System.out.println("Cache directory: " + cacheTarget.get(0));
+            }
+
+            Map<String, Duration> watchIntervals = null;
+            List<String> watchTarget = cli.getArgumentTarget(ARGUMENT_WATCH);
+            if (!watchTarget.isEmpty()) {
+                watchIntervals = parseWatchIntervals(watchTarget);
+                System.out.println("Watch intervals: " + watchIntervals);
+            }
+
+            int serverPort = -1;
+            List<String> serveTarget = cli.getArgumentTarget(ARGUMENT_SERVE);
+            if (!serveTarget.isEmpty()) {
+                serverPort = parseNumber(serveTarget.get(0));
+                System.out.println("Server port: " + serverPort);
+            }
+
+            int serverThreads = Runtime.getRuntime().availableProcessors();
+            List<String> serverThreadsTarget = cli.getArgumentTarget(ARGUMENT_SERVER_THREADS);
+            if (!serverThreadsTarget.isEmpty()) {
+                serverThreads = parseNumber(serverThreadsTarget.get(0));
+                if (serverThreads < 1) {
+                    throw new IllegalArgumentException("Server threads must be positive: " + serverThreads);
+                }
+            }
+
+            Path replayDir = null;
+            List<String> replayTarget = cli.getArgumentTarget(ARGUMENT_REPLAY);
+            if (!replayTarget.isEmpty()) {
+                // only one target is expected
+                replayDir = Paths.get(replayTarget.get(0));
+                if (!replayDir.toFile().isDirectory()) {
+                    System.out.println("Not a directory: " + replayDir);
+                    System.exit(-1);
+                }
+                System.out.println("Replay directory: " + replayDir);
+            }
+
+            if (sources != null) {
+                // change detection, history and serving only know the default source's datasets
+                for (String arg : new String[] { ARGUMENT_WATCH, ARGUMENT_SERVE, ARGUMENT_REPLAY }) {
+                    if (!cli.getArgumentTarget(arg).isEmpty()) {
+                        System.out.printf("--%s can not be combined with --%s.\n", arg, ARGUMENT_SOURCES);
+                        System.exit(-1);
+                    }
+                }
+                if (cli.isFlagSet(ARGUMENT_HISTORY)) {
+                    System.out.printf("--%s can not be combined with --%s.\n", ARGUMENT_HISTORY, ARGUMENT_SOURCES);
+                    System.exit(-1);
+                }
+            }
+
+            System.out.println("Parsing arguments done.");
 
             // create static objects
-            parkingClient = new ParkingClient();
-            parkingParser = new ParkingParser();
+            parkingClient = new ParkingClient(maxConnections, cache, transport);
+            parkingParser = new ParkingParser(metrics);
 
-            xmlStorage = new XmlStorage(dirPath);
-            textStorage = new TextStorage(dirPath);
-            jsonStorage = new JsonStorage(dirPath, gson);
+            storageExecutor = Executors.newCachedThreadPool();
+            boolean compactJson = cli.isFlagSet(ARGUMENT_COMPACT);
+            fileStorage = createStorage(dirPath, fileFormats, compactJson);
+
+            if (replayDir != null) {
+                boolean success = replay(replayDir, dataTargets.get(0));
+                exportMetrics(success);
+                if (!success) {
+                    System.exit(-1);
+                }
+                return;
+            }
+
+            if (sources != null) {
+                // every source gets its own limiter on the shared transport instead of the global one
+                boolean success = crawl(sources, dataTargets.get(0), sharedTransport, cacheDir, maxAge, retries);
+                exportMetrics(success);
+                if (!success) {
+                    System.exit(-1);
+                }
+                return;
+            }
+
+            // stored fingerprints are only valid for the same output formats
+            try {
+                fingerprints = new FingerprintStore(dirPath, String.join(",", fileFormats) + (compactJson ? ",compact" : ""));
+            } catch (IOException e) {
+                System.out.println("Error occurred: " + e.getMessage());
+                System.exit(-1);
+            }
+
+            if (cli.isFlagSet(ARGUMENT_HISTORY)) {
+                Path historyDir = Paths.get(dirPath + HISTORY_DIR);
+                try {
+                    priceHistory = new HistoryLog<>(historyDir.resolve(FILENAME_PRICES), ParkingPrice.class);
+                    workHoursHistory = new HistoryLog<>(historyDir.resolve(FILENAME_WORK_HOURS), ParkingTime.class);
+                    locationHistory = new HistoryLog<>(historyDir.resolve(FILENAME_LOCATIONS), ParkingLocation.class);
+                } catch (IOException e) {
+                    System.out.println("Error occurred: " + e.getMessage());
+                    System.exit(-1);
+                }
+                System.out.println("History directory: " + historyDir);
+            }
+
+            if (serverPort >= 0) {
+                responses = new ResponseCache();
+                try {
+                    QueryServer server = new QueryServer(serverPort, Executors.newFixedThreadPool(serverThreads),
+                            responses, () -> addressIndex);
+                    server.start();
+                    System.out.println("Serving data on port " + server.getPort());
+                } catch (IOException e) {
+                    System.out.println("Error occurred: " + e.getMessage());
+                    System.exit(-1);
+                }
+            }
 
             // only one target is expected, discard others
             String target = dataTargets.get(0);
+            if (watchIntervals != null) {
+                watch(target, watchIntervals);
+                return;
+            }
+
+            boolean success = true;
             switch (target) {
                 case DATA_TYPE_TARGET_PRICE:
                     try {
-                        getPrices(fileFormats);
+                        getPrices();
                     } catch (IOException e) {
                         System.out.println("Error occurred" + e.getMessage());
-                        System.exit(-1);
+                        success = false;
                     }
                     break;
                 case DATA_TYPE_TARGET_WORK_HOURS:
                     try {
-                        getWorkHours(fileFormats);
+                        getWorkHours();
                     } catch (IOException e) {
                         System.out.println("Error occurred: " + e.getMessage());
-                        System.exit(-1);
+                        success = false;
                     }
                     break;
                 case DATA_TYPE_TARGET_LOCATION:
                     try {
-                        getLocations(fileFormats);
+                        getLocations();
                     } catch (IOException e) {
                         System.out.println("Error occurred: " + e.getMessage());
-                        System.exit(-1);
+                        success = false;
                     }
                     break;
                 case DATA_TYPE_TARGET_ALL:
-                    try {
-                        getPrices(fileFormats);
-                        getWorkHours(fileFormats);
-                        getLocations(fileFormats);
-                    } catch (IOException e) {
-                        System.out.println("Error occurred: " + e.getMessage());
-                        System.exit(-1);
-                    }
+                    success = getAll();
                     break;
                 default:
                     System.out.println("Unknown data target: " + target);
-                    break;
+                    return;
+            }
+
+            exportMetrics(success);
+            if (!success) {
+                System.exit(-1);
             }
         } catch (IllegalArgumentException e) {
             System.out.printf("Failed to parse arguments [%s]\n", e.getMessage());
+        } finally {
+            if (storageExecutor != null) {
+                storageExecutor.shutdown();
+            }
+            if (crawlExecutor != null) {
+                crawlExecutor.shutdown();
+            }
         }
     }
 
-    private static void getPrices(List<String> fileFormats) throws IOException {
+    /**
+     * Keeps refreshing the target datasets, each on its own interval, and rewrites
+     * the output files only when the parsed data changed. Never returns normally.
+     */
+    private static void watch(String target, Map<String, Duration> intervals) {
+        List<DatasetWatcher> watchers = new ArrayList<>();
+        boolean all = target.equals(DATA_TYPE_TARGET_ALL);
+        if (all || target.equals(DATA_TYPE_TARGET_PRICE)) {
+            watchers.add(new DatasetWatcher(DATA_TYPE_TARGET_PRICE, exported(Main::getPrices)));
+        }
+        if (all || target.equals(DATA_TYPE_TARGET_WORK_HOURS)) {
+            watchers.add(new DatasetWatcher(DATA_TYPE_TARGET_WORK_HOURS, exported(Main::getWorkHours)));
+        }
+        if (all || target.equals(DATA_TYPE_TARGET_LOCATION)) {
+            watchers.add(new DatasetWatcher(DATA_TYPE_TARGET_LOCATION, exported(Main::getLocations)));
+        }
+        if (watchers.isEmpty()) {
+            System.out.println("Unknown data target: " + target);
+            return;
+        }
+
+        for (DatasetWatcher watcher : watchers) {
+            if (!intervals.containsKey(watcher.getName()) && !intervals.containsKey(DATA_TYPE_TARGET_ALL)) {
+                throw new IllegalArgumentException("No watch interval for " + watcher.getName());
+            }
+        }
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(watchers.size());
+        Runtime.getRuntime().addShutdownHook(new Thread(scheduler::shutdownNow));
+        for (DatasetWatcher watcher : watchers) {
+            Duration interval = intervals.getOrDefault(watcher.getName(), intervals.get(DATA_TYPE_TARGET_ALL));
+            scheduler.scheduleWithFixedDelay(watcher, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Watch mode never finishes a run, so the metrics are exported after every refresh.
+     */
+    private static DatasetWatcher.Refresh exported(DatasetWatcher.Refresh refresh) {
+        return () -> {
+            boolean success = false;
+            try {
+                refresh.run();
+                success = true;
+            } finally {
+                exportMetrics(success);
+            }
+        };
+    }
+
+    private static void exportMetrics(boolean success) {
+        if (metrics == null) {
+            return;
+        }
+
+        try {
+            metrics.export(metricsDir, success);
+            System.out.println("Metrics written to " + metricsDir);
+        } catch (IOException e) {
+            System.out.println("Failed to write metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Extracts, parses and stores the archived pages of the target datasets in parallel.
+     *
+     * @return true if every page was replayed
+     */
+    private static boolean replay(Path replayDir, String target) {
+        Set<ArchivedPage.Kind> kinds = EnumSet.noneOf(ArchivedPage.Kind.class);
+        boolean all = target.equals(DATA_TYPE_TARGET_ALL);
+        if (all || target.equals(DATA_TYPE_TARGET_PRICE)) {
+            kinds.add(ArchivedPage.Kind.PRICES);
+        }
+        if (all || target.equals(DATA_TYPE_TARGET_WORK_HOURS)) {
+            kinds.add(ArchivedPage.Kind.WORK_HOURS);
+        }
+        if (all || target.equals(DATA_TYPE_TARGET_LOCATION)) {
+            kinds.add(ArchivedPage.Kind.LOCATIONS);
+        }
+        if (kinds.isEmpty()) {
+            System.out.println("Unknown data target: " + target);
+            return false;
+        }
+
+        ArchiveReplay replay = new ArchiveReplay(replayDir, parkingParser, fileStorage, kinds,
+                Runtime.getRuntime().availableProcessors());
+        try {
+            return replay.run().isEmpty();
+        } catch (IOException e) {
+            System.out.println("Error occurred: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Fetches, parses and stores the target datasets of every source, the sources are
+     * crawled concurrently.
+     *
+     * @return true if every dataset was stored
+     */
+    private static boolean crawl(List<SourceDescriptor> sources, String target, Transport transport, Path cacheDir,
+                                 Duration maxAge, int retries) {
+        Set<CrawlScheduler.Dataset> datasets = EnumSet.noneOf(CrawlScheduler.Dataset.class);
+        boolean all = target.equals(DATA_TYPE_TARGET_ALL);
+        if (all || target.equals(DATA_TYPE_TARGET_PRICE)) {
+            datasets.add(CrawlScheduler.Dataset.PRICES);
+        }
+        if (all || target.equals(DATA_TYPE_TARGET_WORK_HOURS)) {
+            datasets.add(CrawlScheduler.Dataset.WORK_HOURS);
+        }
+        if (all || target.equals(DATA_TYPE_TARGET_LOCATION)) {
+            datasets.add(CrawlScheduler.Dataset.LOCATIONS);
+        }
+        if (datasets.isEmpty()) {
+            System.out.println("Unknown data target: " + target);
+            return false;
+        }
+
+        CrawlScheduler scheduler = new CrawlScheduler(sources, transport, cacheDir, maxAge, retries, parkingParser,
+                fileStorage, crawlExecutor);
+        return scheduler.run(datasets).isEmpty();
+    }
+
+    /**
+     * Accepts "[seconds]" as interval for every dataset and "[dataset]=[seconds]"
+     * for a single dataset, e.g. "3600 location=86400".
+     */
+    private static Map<String, Duration> parseWatchIntervals(List<String> targets) {
+        Map<String, Duration> intervals = new HashMap<>();
+        for (String target : targets) {
+            String name = DATA_TYPE_TARGET_ALL;
+            String value = target;
+            int separator = target.indexOf('=');
+            if (separator >= 0) {
+                name = target.substring(0, separator);
+                value = target.substring(separator + 1);
+            }
+
+            long seconds;
+            try {
+                seconds = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + value);
+            }
+            if (seconds <= 0) {
+                throw new IllegalArgumentException("Watch interval must be positive: " + target);
+            }
+
+            intervals.put(name, Duration.ofSeconds(seconds));
+        }
+        return intervals;
+    }
+
+    private static void getPrices() throws IOException {
+        processPrices(fetchPrices());
+    }
+
+    private static void getWorkHours() throws IOException {
+        processWorkHours(fetchWorkHours());
+    }
+
+    private static void getLocations() throws IOException {
+        processLocations(fetchLocations());
+    }
+
+    private static void processPrices(List<String[]> priceInfo) throws IOException {
+        long fingerprint = FingerprintStore.fingerprint(priceInfo);
+        if (isUnchanged(FINGERPRINT_PRICES, fingerprint, FILENAME_PRICES, ResponseCache.DATASET_PRICES)) {
+            System.out.println("Parking prices unchanged, skipping.");
+            return;
+        }
+
+        List<ParkingPrice> prices = parsePrices(priceInfo);
+        storePrices(prices);
+        saveFingerprint(FINGERPRINT_PRICES, fingerprint);
+        if (priceHistory != null) {
+            priceHistory.append(System.currentTimeMillis(), prices);
+        }
+        if (responses != null) {
+            responses.updatePrices(prices);
+        }
+    }
+
+    private static void processWorkHours(List<String[]> workHoursInfo) throws IOException {
+        long fingerprint = FingerprintStore.fingerprint(workHoursInfo);
+        if (isUnchanged(FINGERPRINT_WORK_HOURS, fingerprint, FILENAME_WORK_HOURS, ResponseCache.DATASET_WORK_HOURS)) {
+            System.out.println("Parking work hours unchanged, skipping.");
+            return;
+        }
+
+        List<ParkingTime> workHours = parseWorkHours(workHoursInfo);
+        storeWorkHours(workHours);
+        saveFingerprint(FINGERPRINT_WORK_HOURS, fingerprint);
+        if (workHoursHistory != null) {
+            workHoursHistory.append(System.currentTimeMillis(), workHours);
+        }
+        if (responses != null) {
+            responses.updateWorkHours(workHours);
+        }
+    }
+
+    /**
+     * Besides the whole table, every zone has its own fingerprint. Zones that did not
+     * change since the previous refresh in this process reuse their parsed locations.
+     */
+    private static void processLocations(List<String[]> locationInfo) throws IOException {
+        long fingerprint = FingerprintStore.fingerprint(locationInfo);
+        if (isUnchanged(FINGERPRINT_LOCATIONS, fingerprint, FILENAME_LOCATIONS, ResponseCache.DATASET_LOCATIONS)) {
+            System.out.println("Parking locations unchanged, skipping.");
+            return;
+        }
+
+        // rows are ordered by zone, the first cell of each row is the zone
+        Map<String, List<String[]>> zoneRows = new LinkedHashMap<>();
+        for (String[] row : locationInfo) {
+            zoneRows.computeIfAbsent(row[0], zone -> new ArrayList<>()).add(row);
+        }
+
+        System.out.println("Parsing parking locations information ...");
+        List<ParkingLocation> locations = new ArrayList<>(locationInfo.size());
+        Map<String, Long> zoneFingerprints = new HashMap<>();
+        int reused = 0;
+        for (Map.Entry<String, List<String[]>> entry : zoneRows.entrySet()) {
+            String zone = entry.getKey();
+            long zoneFingerprint = FingerprintStore.fingerprint(entry.getValue());
+            zoneFingerprints.put(zone, zoneFingerprint);
+
+            List<ParkingLocation> zoneLocations = previousZoneLocations.get(zone);
+            if (zoneLocations == null || !fingerprints.matches(FINGERPRINT_LOCATIONS + "." + zone, zoneFingerprint)) {
+                zoneLocations = parkingParser.parseParkingLocations(entry.getValue());
+                previousZoneLocations.put(zone, zoneLocations);
+            } else {
+                reused++;
+            }
+            locations.addAll(zoneLocations);
+        }
+        System.out.printf("Parsing finished, %d of %d zones unchanged.\n", reused, zoneRows.size());
+
+        addressIndex = AddressIndex.build(locations);
+        System.out.println("Address index rebuilt, entries: " + addressIndex.size());
+
+        storeLocations(locations);
+        zoneFingerprints.forEach((zone, zoneFingerprint) ->
+                fingerprints.put(FINGERPRINT_LOCATIONS + "." + zone, zoneFingerprint));
+        saveFingerprint(FINGERPRINT_LOCATIONS, fingerprint);
+        if (locationHistory != null) {
+            locationHistory.append(System.currentTimeMillis(), locations);
+        }
+        if (responses != null) {
+            responses.updateLocations(locations);
+        }
+    }
+
+    /**
+     * A dataset can only be skipped if its files exist and, when serving, the server
+     * already has it in memory.
+     */
+    private static boolean isUnchanged(String key, long fingerprint, String filename, String dataset) {
+        return fingerprints.matches(key, fingerprint)
+                && fileStorage.filesExist(filename)
+                && (responses == null || responses.contains(dataset));
+    }
+
+    private static int parseNumber(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    /**
+     * @return ceiling of the requests in flight when zones are downloaded with maxConnections
+     * concurrent requests
+     */
+    private static int maxConcurrency(int maxConnections) {
+        return Math.max(RateLimitedTransport.DEFAULT_MAX_CONCURRENCY, PIPELINE_THREAD_COUNT + maxConnections);
+    }
+
+    private static void saveFingerprint(String key, long fingerprint) throws IOException {
+        fingerprints.put(key, fingerprint);
+        fingerprints.save();
+    }
+
+    /**
+     * Runs the price, work hours and location pipelines concurrently. All downloads are
+     * started at once without blocking a thread, each dataset is processed as soon as its
+     * own download finishes and a failure in one pipeline does not affect the others.
+     *
+     * @return true if every pipeline finished successfully
+     */
+    private static boolean getAll() {
+        ExecutorService executor = Executors.newFixedThreadPool(PIPELINE_THREAD_COUNT);
+        try {
+            System.out.println("Downloading parking price, work hours and zones/locations information ...");
+            CompletableFuture<Void> prices = parkingClient.fetchParkingPricesAsync()
+                    .thenAcceptAsync(unchecked(Main::processPrices), executor);
+            CompletableFuture<Void> workHours = parkingClient.fetchParkingWorkHoursAsync()
+                    .thenAcceptAsync(unchecked(Main::processWorkHours), executor);
+            CompletableFuture<Void> locations = parkingClient.fetchParkingLocationsAsync()
+                    .thenAcceptAsync(unchecked(Main::processLocations), executor);
+
+            boolean success = awaitPipeline(prices, "prices");
+            success &= awaitPipeline(workHours, "work hours");
+            success &= awaitPipeline(locations, "locations");
+            return success;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static boolean awaitPipeline(CompletableFuture<Void> pipeline, String name) {
+        try {
+            pipeline.join();
+            return true;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                cause = cause.getCause();
+            }
+            System.out.println("Error occurred (" + name + "): " + cause.getMessage());
+            return false;
+        }
+    }
+
+    private static List<String[]> fetchPrices() throws IOException {
         System.out.println("Downloading parking price information ...");
-        String priceInfo = parkingClient.fetchParkingPrices();
+        List<String[]> priceInfo = parkingClient.fetchParkingPrices();
         System.out.println("Download finished.");
+        return priceInfo;
+    }
 
+    private static List<ParkingPrice> parsePrices(List<String[]> priceInfo) {
         System.out.println("Parsing parking pricing information ...");
         List<ParkingPrice> prices = parkingParser.parseParkingPrices(priceInfo);
         System.out.println("Parsing finished.");
         System.out.println("Parsed information: " + prices);
+        return prices;
+    }
 
+    private static void storePrices(List<ParkingPrice> prices) throws IOException {
         System.out.println("Writing information to disk ...");
-        String filename = "prices";
-        if (fileFormats.contains("all")) {
-            xmlStorage.storePrices(prices, filename + ".xml");
-            jsonStorage.storePrices(prices, filename + ".json");
-            textStorage.storePrices(prices, filename + ".txt");
-        } else {
-            if (fileFormats.contains("xml")) {
-                xmlStorage.storePrices(prices, filename + ".xml");
-            }
-            if (fileFormats.contains("json")) {
-                jsonStorage.storePrices(prices, filename + ".json");
-            }
-            if (fileFormats.contains("raw")) {
-                textStorage.storePrices(prices, filename + ".txt");
-            }
-        }
+        fileStorage.storePrices(prices, FILENAME_PRICES);
         System.out.println("Information written to disk.");
     }
 
-    private static void getWorkHours(List<String> fileFormats) throws IOException {
+    private static List<String[]> fetchWorkHours() throws IOException {
         System.out.println("Downloading parking work hours information ...");
-        String workHoursInfo = parkingClient.fetchParkingWorkHours();
+        List<String[]> workHoursInfo = parkingClient.fetchParkingWorkHours();
         System.out.println("Download finished.");
+        return workHoursInfo;
+    }
 
+    private static List<ParkingTime> parseWorkHours(List<String[]> workHoursInfo) {
         System.out.println("Parsing parking work hours information ...");
         List<ParkingTime> parkingTimeData = parkingParser.parseParkingWorkHours(workHoursInfo);
         System.out.println("Parsing finished.");
         System.out.println("Parsed information: " + parkingTimeData);
+        return parkingTimeData;
+    }
 
+    private static void storeWorkHours(List<ParkingTime> parkingTimeData) throws IOException {
         System.out.println("Writing information to disk ...");
-        String filename = "work_hours";
-        if (fileFormats.contains("all")) {
-            xmlStorage.storeWorkHours(parkingTimeData, filename + ".xml");
-            jsonStorage.storeWorkHours(parkingTimeData, filename + ".json");
-            textStorage.storeWorkHours(parkingTimeData, filename + ".txt");
-        } else {
-            if (fileFormats.contains("xml")) {
-                xmlStorage.storeWorkHours(parkingTimeData, filename + ".xml");
-            }
-            if (fileFormats.contains("json")) {
-                jsonStorage.storeWorkHours(parkingTimeData, filename + ".json");
-            }
-            if (fileFormats.contains("raw")) {
-                textStorage.storeWorkHours(parkingTimeData, filename + ".txt");
-            }
-        }
+        fileStorage.storeWorkHours(parkingTimeData, FILENAME_WORK_HOURS);
         System.out.println("Information written to disk.");
     }
 
-    private static void getLocations(List<String> fileFormats) throws IOException {
+    private static List<String[]> fetchLocations() throws IOException {
         System.out.println("Downloading parking zones/locations information ...");
-        String locationInfo = parkingClient.fetchParkingLocations();
+        List<String[]> locationInfo = parkingClient.fetchParkingLocations();
         System.out.println("Download finished.");
+        return locationInfo;
+    }
 
-        System.out.println("Parsing parking locations information ...");
-        List<ParkingLocation> locations = parkingParser.parseParkingLocations(locationInfo);
-        System.out.println("Parsing finished.");
-        System.out.println("Parsed information: " + locations);
-
+    private static void storeLocations(List<ParkingLocation> locations) throws IOException {
         System.out.println("Writing information to disk ...");
-        String filename = "locations";
-        if (fileFormats.contains("all")) {
-            xmlStorage.storeLocations(locations, filename + ".xml");
-            jsonStorage.storeLocations(locations, filename + ".json");
-            textStorage.storeLocations(locations, filename + ".txt");
-        } else {
-            if (fileFormats.contains("xml")) {
-                xmlStorage.storeLocations(locations, filename + ".xml");
-            }
-            if (fileFormats.contains("json")) {
-                jsonStorage.storeLocations(locations, filename + ".json");
-            }
-            if (fileFormats.contains("raw")) {
-                textStorage.storeLocations(locations, filename + ".txt");
-            }
-        }
+        fileStorage.storeLocations(locations, FILENAME_LOCATIONS);
         System.out.println("Information written to disk.");
     }
 
+    private static MultiFormatStorage createStorage(String dirPath, List<String> fileFormats, boolean compactJson) {
+        boolean all = fileFormats.contains("all");
+        MultiFormatStorage storage = new MultiFormatStorage(dirPath, storageExecutor, metrics);
+        if (all || fileFormats.contains("xml")) {
+            storage.add(new XmlStorage(dirPath), ".xml");
+        }
+        if (all || fileFormats.contains("json")) {
+            storage.add(new JsonStorage(dirPath, compactJson), ".json");
+        }
+        if (all || fileFormats.contains("raw")) {
+            storage.add(new TextStorage(dirPath), ".txt");
+        }
+        if (all || fileFormats.contains("bin")) {
+            storage.add(new SnapshotStorage(dirPath), ".bin");
+        }
+        return storage;
+    }
+
+    private static <T> Consumer<T> unchecked(IOConsumer<T> consumer) {
+        return value -> {
+            try {
+                consumer.accept(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+
     private static List<Argument> createArguments() {
         return List.of(
                 new Argument(ARGUMENT_DATA_TYPE, false, true),
                 new Argument(ARGUMENT_FILE_FORMAT, false, false),
                 new Argument(ARGUMENT_DIR_PATH, false, false),
+                new Argument(ARGUMENT_CONNECTIONS, false, false),
+                new Argument(ARGUMENT_CACHE_DIR, false, false),
+                new Argument(ARGUMENT_CACHE_MAX_AGE, false, false),
+                new Argument(ARGUMENT_CONNECT_TIMEOUT, false, false),
+                new Argument(ARGUMENT_READ_TIMEOUT, false, false),
+                new Argument(ARGUMENT_RATE_LIMIT, false, false),
+                new Argument(ARGUMENT_RETRIES, false, false),
+                new Argument(ARGUMENT_COMPACT, true, false),
+                new Argument(ARGUMENT_WATCH, false, false),
+                new Argument(ARGUMENT_SERVE, false, false),
+                new Argument(ARGUMENT_SERVER_THREADS, false, false),
+                new Argument(ARGUMENT_HISTORY, true, false),
+                new Argument(ARGUMENT_REPLAY, false, false),
+                new Argument(ARGUMENT_METRICS, false, false),
+                new Argument(ARGUMENT_SOURCES, false, false),
                 new Argument(ARGUMENT_HELP, true, false));
     }
 
@@ -255,7 +908,7 @@ public class Main {
         System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
 
         arg = ARGUMENT_FILE_FORMAT;
-        values = "[json] [xml] [raw] [all]";
+        values = "[json] [xml] [raw] [bin] [all]";
         description = "- Specify file formats in which to store downloaded data. " +
                 "If argument is not set then data is stored in all supported formats.";
         System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
@@ -265,5 +918,99 @@ public class Main {
         description = "- Path to existing file system directory in which to store downloaded data. " +
                 "If argument is not set then the file is stored in calling dir.";
         System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_CONNECTIONS;
+        values = "[number]";
+        description = "- Max number of concurrent requests when downloading zone locations. " +
+                "If argument is not set then zones are downloaded one by one. Prices and work hours are " +
+                "downloaded at the same time, in total at most " + RateLimitedTransport.DEFAULT_MAX_CONCURRENCY +
+                " requests (or this number + " + PIPELINE_THREAD_COUNT + " if larger) are in flight.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_CACHE_DIR;
+        values = "";
+        description = "- Path to directory in which downloaded pages are cached between runs. " +
+                "If argument is not set then pages are always downloaded.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_CACHE_MAX_AGE;
+        values = "[seconds]";
+        description = "- Cached pages younger than this are used without contacting the server. " +
+                "If argument is not set then every cached page is revalidated.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_CONNECT_TIMEOUT;
+        values = "[seconds]";
+        description = "- Time to wait for a connection to the server. Defaults to " +
+                HttpClientTransport.DEFAULT_CONNECT_TIMEOUT.getSeconds() + " seconds.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_READ_TIMEOUT;
+        values = "[seconds]";
+        description = "- Time to wait for a response once a request is sent. Defaults to " +
+                HttpClientTransport.DEFAULT_READ_TIMEOUT.getSeconds() + " seconds.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_RATE_LIMIT;
+        values = "[requests per second]";
+        description = "- Limit the request rate, unlimited by default. Concurrent requests are always " +
+                "reduced while the server is slow or returns errors.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_RETRIES;
+        values = "[number]";
+        description = "- Retry failed requests and 429/5xx responses this many times with a growing delay. " +
+                "Defaults to " + RateLimitedTransport.DEFAULT_MAX_RETRIES + ", 0 disables retries.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_COMPACT;
+        values = "";
+        description = "- Write JSON on a single line instead of pretty printing it.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_WATCH;
+        values = "[seconds] [type=seconds] ...";
+        description = "- Keep running and refresh data on the given interval, per data type if needed " +
+                "(e.g. 3600 location=86400). Files are rewritten only when the data changed.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_SERVE;
+        values = "[port]";
+        description = "- Serve the downloaded data over HTTP on the given port, e.g. /prices.json, " +
+                "/locations.xml, /zone?address=... Combine with --watch to keep the data fresh.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_SERVER_THREADS;
+        values = "[number]";
+        description = "- Number of threads handling HTTP requests. Defaults to the number of processors.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_HISTORY;
+        values = "";
+        description = "- Keep every changed version of the data as a delta in the history " +
+                "subdirectory of the output directory.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_REPLAY;
+        values = "";
+        description = "- Read saved pages (e.g. a --cache directory) from this directory instead of " +
+                "downloading them. Each page is stored under its relative path, using all processors.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_METRICS;
+        values = "[directory]";
+        description = "- Write fetch, parse and store timings to " + RunMetrics.REPORT_FILENAME + " and " +
+                RunMetrics.PROMETHEUS_FILENAME + " (Prometheus textfile format) in this directory at the end " +
+                "of the run, or after every refresh in watch mode.";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
+
+        arg = ARGUMENT_SOURCES;
+        values = "[file]";
+        description = "- Crawl the sources described in this JSON file concurrently instead of zagrebparking.hr. " +
+                "Each source has its own request budget and zone ids, files are prefixed with the source name. " +
+                "Every dataset is stored on each run, unchanged datasets are not skipped. Can not be combined " +
+                "with --" + ARGUMENT_WATCH + ", --" + ARGUMENT_SERVE + ", --" + ARGUMENT_HISTORY + " or --" +
+                ARGUMENT_REPLAY + ".";
+        System.out.printf(HELP_PRINTOUT_FORMAT, arg, values, description);
     }
 }
@@ -4,11 +4,13 @@ import java.util.Objects;
 
 public class ParkingLocation {
     private final String zone;
+    private final int zoneId;
     private final String city;
     private final String address;
 
     private ParkingLocation(Builder builder) {
         this.zone = builder.zone;
+        this.zoneId = builder.zoneRegistry.id(builder.zone);
         this.city = builder.city;
         this.address = builder.address;
     }
@@ -17,6 +19,14 @@ public class ParkingLocation {
         return zone;
     }
 
+    /**
+     * @return canonical zone id from the {@link ZoneRegistry} of the source, by default
+     * {@link ZoneRegistry#DEFAULT}
+     */
+    public int getZoneId() {
+        return zoneId;
+    }
+
     public String getCity() {
         return city;
     }
@@ -49,6 +59,7 @@ public class ParkingLocation {
 
     public static class Builder {
         private String zone;
+        private ZoneRegistry zoneRegistry = ZoneRegistry.DEFAULT;
         private String city;
         private String address;
 
@@ -65,12 +76,20 @@ public class ParkingLocation {
         }
 
         public Builder zone(String zone) {
-            this.zone = zone;
+            this.zone = StringPool.intern(zone);
+            return this;
+        }
+
+        /**
+         * @param zoneRegistry assigns the zone id, the registry of the source the record is from
+         */
+        public Builder zoneRegistry(ZoneRegistry zoneRegistry) {
+            this.zoneRegistry = zoneRegistry;
             return this;
         }
 
         public Builder city(String city) {
-            this.city = city;
+            this.city = StringPool.intern(city);
             return this;
         }
 
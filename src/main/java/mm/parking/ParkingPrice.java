@@ -4,6 +4,7 @@ import java.util.Objects;
 
 public class ParkingPrice {
     private final String zone;
+    private final int zoneId;
     private final String phoneNumber;
     private final double hourlyPrice;
     private final double dailyPrice;
@@ -11,6 +12,7 @@ public class ParkingPrice {
 
     private ParkingPrice(Builder builder) {
         this.zone = builder.zone;
+        this.zoneId = builder.zoneRegistry.id(builder.zone);
         this.phoneNumber = builder.phoneNumber;
         this.hourlyPrice = builder.hourlyPrice;
         this.dailyPrice = builder.dailyPrice;
@@ -21,6 +23,14 @@ public class ParkingPrice {
         return zone;
     }
 
+    /**
+     * @return canonical zone id from the {@link ZoneRegistry} of the source, by default
+     * {@link ZoneRegistry#DEFAULT}
+     */
+    public int getZoneId() {
+        return zoneId;
+    }
+
     public String getPhoneNumber() {
         return phoneNumber;
     }
@@ -65,6 +75,7 @@ public class ParkingPrice {
 
     public static class Builder {
         private String zone;
+        private ZoneRegistry zoneRegistry = ZoneRegistry.DEFAULT;
         private String phoneNumber;
         private double hourlyPrice;
         private double dailyPrice;
@@ -83,12 +94,20 @@ public class ParkingPrice {
         }
 
         public Builder zone(String zone) {
-            this.zone = zone;
+            this.zone = StringPool.intern(zone);
+            return this;
+        }
+
+        /**
+         * @param zoneRegistry assigns the zone id, the registry of the source the record is from
+         */
+        public Builder zoneRegistry(ZoneRegistry zoneRegistry) {
+            this.zoneRegistry = zoneRegistry;
             return this;
         }
 
         public Builder phoneNumber(String phoneNumber) {
-            this.phoneNumber = phoneNumber;
+            this.phoneNumber = StringPool.intern(phoneNumber);
             return this;
         }
 
@@ -1,24 +1,38 @@
 package mm.parking;
 
+import mm.parking.schedule.WeeklySchedule;
+
 import java.util.Objects;
 
 public class ParkingTime {
     private final String zone;
+    private final int zoneId;
     private final String workDayHours;
     private final String saturdayHours;
     private final String sundayHolidayHours;
+    private final WeeklySchedule schedule;
 
     private ParkingTime(Builder builder) {
         this.zone = builder.zone;
+        this.zoneId = builder.zoneRegistry.id(builder.zone);
         this.workDayHours = builder.workDayHours;
         this.saturdayHours = builder.saturdayHours;
         this.sundayHolidayHours = builder.sundayHolidayHours;
+        this.schedule = WeeklySchedule.parse(workDayHours, saturdayHours, sundayHolidayHours);
     }
 
     public String getZone() {
         return zone;
     }
 
+    /**
+     * @return canonical zone id from the {@link ZoneRegistry} of the source, by default
+     * {@link ZoneRegistry#DEFAULT}
+     */
+    public int getZoneId() {
+        return zoneId;
+    }
+
     public String getWorkDayHours() {
         return workDayHours;
     }
@@ -31,6 +45,13 @@ public class ParkingTime {
         return sundayHolidayHours;
     }
 
+    /**
+     * @return charging periods parsed from the work hours
+     */
+    public WeeklySchedule getSchedule() {
+        return schedule;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -58,6 +79,7 @@ public class ParkingTime {
 
     public static class Builder {
         private String zone;
+        private ZoneRegistry zoneRegistry = ZoneRegistry.DEFAULT;
         private String workDayHours;
         private String saturdayHours;
         private String sundayHolidayHours;
@@ -75,22 +97,30 @@ public class ParkingTime {
         }
 
         public Builder zone(String zone) {
-            this.zone = zone;
+            this.zone = StringPool.intern(zone);
+            return this;
+        }
+
+        /**
+         * @param zoneRegistry assigns the zone id, the registry of the source the record is from
+         */
+        public Builder zoneRegistry(ZoneRegistry zoneRegistry) {
+            this.zoneRegistry = zoneRegistry;
             return this;
         }
 
         public Builder workDayHours(String workDayHours) {
-            this.workDayHours = workDayHours;
+            this.workDayHours = StringPool.intern(workDayHours);
             return this;
         }
 
         public Builder saturdayHours(String saturdayHours) {
-            this.saturdayHours = saturdayHours;
+            this.saturdayHours = StringPool.intern(saturdayHours);
             return this;
         }
 
         public Builder sundayHolidayHours(String sundayHolidayHours) {
-            this.sundayHolidayHours = sundayHolidayHours;
+            this.sundayHolidayHours = StringPool.intern(sundayHolidayHours);
             return this;
         }
     }
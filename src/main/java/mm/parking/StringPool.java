@@ -0,0 +1,40 @@
+package mm.parking;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared instances of strings that repeat across many records, such as zones, city,
+ * phone numbers and work hours. Unlike {@link String#intern()} the pool lives on the
+ * regular heap and lookups do not go through the VM string table.
+ *
+ * Only meant for values from a small, bounded set. Once the pool is full further values
+ * are returned as they are, so unexpected input cannot grow it without limit.
+ */
+public final class StringPool {
+    public static final int MAX_SIZE = 10000;
+
+    private static final ConcurrentMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    private StringPool() {
+
+    }
+
+    public static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String pooled = POOL.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        // the size check races with other threads, the pool can exceed the limit slightly
+        if (POOL.size() >= MAX_SIZE) {
+            return value;
+        }
+
+        pooled = POOL.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+}
@@ -0,0 +1,191 @@
+package mm.parking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical parking zones of one source with small integer ids.
+ *
+ * The pages spell zones differently, e.g. "I.1. zona" on the price page and "Zona 1.1"
+ * in the location filter. Both map to the canonical name "Zona 1.1" and the same id, so
+ * records from different pages can be compared and joined by id.
+ *
+ * Ids are only comparable within one registry, every source has its own. The known zones
+ * of a source keep their ids, unknown zones get the next free id when they are first
+ * seen. Id 0 stands for a missing zone. The static methods use the {@link #DEFAULT}
+ * registry of the Zagreb zones, ids 1 - 10 in zona_id order.
+ */
+public final class ZoneRegistry {
+    public static final int NO_ZONE = 0;
+
+    // "I. zona", "II.3. zona", "III. zona Sesvete"
+    private static final Pattern ROMAN_ZONE = Pattern.compile("^([IVX]+)\\.(?:(\\d+)\\.)?\\s*zona\\s*(.*)$",
+            Pattern.CASE_INSENSITIVE);
+    // "Zona 1", "zona 3 Sesvete"
+    private static final Pattern ZONE = Pattern.compile("^zona\\s+(.+)$", Pattern.CASE_INSENSITIVE);
+
+    // after the patterns, which canonicalize its zone names
+    public static final ZoneRegistry DEFAULT = new ZoneRegistry(knownZones(
+            "Zona 1", "Zona 1.1", "Zona 1.2", "Zona 2.1", "Zona 2.2",
+            "Zona 2.3", "Zona 3", "Zona 3 Sesvete", "Zona 4.1", "Zona 4.2"));
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> labelIds = new ConcurrentHashMap<>();
+    // by id, null for ids without a zone
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * @param knownZones zone names by id, ids must be positive
+     */
+    public ZoneRegistry(Map<Integer, String> knownZones) {
+        int maxId = knownZones.isEmpty() ? NO_ZONE : Collections.max(knownZones.keySet());
+        names.addAll(Collections.nCopies(maxId + 1, null));
+        for (Map.Entry<Integer, String> zone : knownZones.entrySet()) {
+            if (zone.getKey() <= NO_ZONE) {
+                throw new IllegalArgumentException("Zone id must be positive: " + zone.getKey());
+            }
+            String name = canonicalName(zone.getValue());
+            if (ids.putIfAbsent(name, zone.getKey()) != null) {
+                throw new IllegalArgumentException("Zone " + name + " has more than one id");
+            }
+            names.set(zone.getKey(), name);
+        }
+    }
+
+    /**
+     * @param label zone as written on any of the pages
+     * @return canonical id of the zone in the {@link #DEFAULT} registry, {@link #NO_ZONE}
+     * if label is null
+     */
+    public static int idOf(String label) {
+        return DEFAULT.id(label);
+    }
+
+    /**
+     * @return canonical name of the zone in the {@link #DEFAULT} registry, null for
+     * {@link #NO_ZONE} and unknown ids
+     */
+    public static String nameOf(int id) {
+        return DEFAULT.name(id);
+    }
+
+    /**
+     * @param label zone as written on any of the pages
+     * @return canonical id of the zone, {@link #NO_ZONE} if label is null
+     */
+    public int id(String label) {
+        if (label == null) {
+            return NO_ZONE;
+        }
+
+        Integer id = labelIds.get(label);
+        if (id == null) {
+            id = register(canonicalName(label));
+            labelIds.put(label, id);
+        }
+        return id;
+    }
+
+    /**
+     * Same as {@link #id(String)} without registering unknown zones.
+     *
+     * @param label zone as written on any of the pages
+     * @return canonical id of the zone, {@link #NO_ZONE} if label is null or not registered
+     */
+    public int find(String label) {
+        if (label == null) {
+            return NO_ZONE;
+        }
+
+        Integer id = labelIds.get(label);
+        if (id == null) {
+            id = ids.get(canonicalName(label));
+        }
+        return id == null ? NO_ZONE : id;
+    }
+
+    /**
+     * @return canonical name of the zone, null for {@link #NO_ZONE} and unknown ids
+     */
+    public String name(int id) {
+        synchronized (names) {
+            return id >= 0 && id < names.size() ? names.get(id) : null;
+        }
+    }
+
+    public static String canonicalName(String label) {
+        String trimmed = label.trim().replaceAll("\\s+", " ");
+
+        Matcher roman = ROMAN_ZONE.matcher(trimmed);
+        if (roman.matches()) {
+            StringBuilder sb = new StringBuilder("Zona ").append(romanToInt(roman.group(1)));
+            if (roman.group(2) != null) {
+                sb.append('.').append(roman.group(2));
+            }
+            if (!roman.group(3).isEmpty()) {
+                sb.append(' ').append(roman.group(3));
+            }
+            return sb.toString();
+        }
+
+        Matcher zone = ZONE.matcher(trimmed);
+        if (zone.matches()) {
+            return "Zona " + zone.group(1);
+        }
+
+        return trimmed;
+    }
+
+    private int register(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (names) {
+            return ids.computeIfAbsent(name, key -> {
+                names.add(key);
+                return names.size() - 1;
+            });
+        }
+    }
+
+    private static Map<Integer, String> knownZones(String... names) {
+        Map<Integer, String> zones = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            zones.put(i + 1, names[i]);
+        }
+        return zones;
+    }
+
+    private static int romanToInt(String roman) {
+        int result = 0;
+        int previous = 0;
+        String upper = roman.toUpperCase(Locale.ROOT);
+        for (int i = upper.length() - 1; i >= 0; i--) {
+            int value;
+            switch (upper.charAt(i)) {
+                case 'I':
+                    value = 1;
+                    break;
+                case 'V':
+                    value = 5;
+                    break;
+                default:
+                    value = 10;
+                    break;
+            }
+            result += value < previous ? -value : value;
+            previous = Math.max(previous, value);
+        }
+        return result;
+    }
+}
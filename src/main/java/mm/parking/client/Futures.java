@@ -0,0 +1,63 @@
+package mm.parking.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Bridges between the asynchronous fetch methods and code that throws IOException.
+ */
+final class Futures {
+
+    private Futures() {
+
+    }
+
+    /**
+     * Waits for the future and rethrows an IOException that completed it.
+     */
+    static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for response", e);
+        }
+    }
+
+    static IOException toIOException(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof UncheckedIOException) {
+            return ((UncheckedIOException) error).getCause();
+        }
+        if (error instanceof IOException) {
+            return (IOException) error;
+        }
+        return new IOException(error.getMessage(), error);
+    }
+
+    @FunctionalInterface
+    interface IOFunction<T, R> {
+        R apply(T value) throws IOException;
+    }
+
+    /**
+     * Adapts a function that throws IOException for use in thenApply.
+     */
+    static <T, R> Function<T, R> unchecked(IOFunction<T, R> function) {
+        return value -> {
+            try {
+                return function.apply(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
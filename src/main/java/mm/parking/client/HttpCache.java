@@ -0,0 +1,202 @@
+package mm.parking.client;
+
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Persistent cache of downloaded pages. Every page is stored in the cache directory
+ * together with its ETag and Last-Modified validators, which are sent back as
+ * If-None-Match and If-Modified-Since on the next request. When the server answers
+ * with 304 Not Modified the cached body is reused.
+ *
+ * If max age is positive, entries younger than max age are served without
+ * contacting the server at all.
+ */
+public class HttpCache {
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final int STATUS_NOT_MODIFIED = 304;
+
+    private static final String KEY_URL = "url";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_FETCHED_AT = "fetchedAt";
+
+    private final Path dir;
+    private final Duration maxAge;
+    private final Transport transport;
+
+    public HttpCache(Path dir) {
+        this(dir, Duration.ZERO);
+    }
+
+    public HttpCache(Path dir, Duration maxAge) {
+        this(dir, maxAge, new HttpClientTransport());
+    }
+
+    public HttpCache(Path dir, Duration maxAge, Transport transport) {
+        this.dir = dir;
+        this.maxAge = maxAge;
+        this.transport = transport;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Returns the page body for url, either from the cache or from the server.
+     */
+    public String fetch(String url) throws IOException {
+        return Futures.await(fetchAsync(url));
+    }
+
+    /**
+     * Same as {@link #fetch(String)}, completes once the page is read from the cache or
+     * the server answered.
+     */
+    public CompletableFuture<String> fetchAsync(String url) {
+        String key = key(url);
+        Path bodyPath = dir.resolve(key + ".html");
+        Path metaPath = dir.resolve(key + ".properties");
+
+        Map<String, String> headers = new HashMap<>();
+        Properties meta = null;
+        try {
+            if (Files.isRegularFile(bodyPath) && Files.isRegularFile(metaPath)) {
+                meta = readMeta(metaPath);
+            }
+
+            if (meta != null && isFresh(meta)) {
+                return CompletableFuture.completedFuture(readBody(bodyPath));
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (meta != null) {
+            String etag = meta.getProperty(KEY_ETAG);
+            if (etag != null) {
+                headers.put(HEADER_IF_NONE_MATCH, etag);
+            }
+            String lastModified = meta.getProperty(KEY_LAST_MODIFIED);
+            if (lastModified != null) {
+                headers.put(HEADER_IF_MODIFIED_SINCE, lastModified);
+            }
+        }
+
+        Properties cachedMeta = meta;
+        return transport.fetch(url, headers)
+                .thenApply(Futures.unchecked(response -> store(url, response, cachedMeta, bodyPath, metaPath)));
+    }
+
+    private String store(String url, TransportResponse response, Properties meta, Path bodyPath, Path metaPath)
+            throws IOException {
+        if (response.getStatusCode() == STATUS_NOT_MODIFIED && meta != null) {
+            meta.setProperty(KEY_FETCHED_AT, String.valueOf(System.currentTimeMillis()));
+            writeMeta(metaPath, meta);
+            return readBody(bodyPath);
+        }
+
+        if (response.getStatusCode() < 200 || response.getStatusCode() >= 400) {
+            throw new HttpStatusException("HTTP error fetching URL", response.getStatusCode(), url);
+        }
+
+        String body;
+        try (Reader reader = response.newReader()) {
+            StringWriter writer = new StringWriter(response.getBody().length);
+            reader.transferTo(writer);
+            body = writer.toString();
+        }
+
+        Properties newMeta = new Properties();
+        newMeta.setProperty(KEY_URL, url);
+        newMeta.setProperty(KEY_FETCHED_AT, String.valueOf(System.currentTimeMillis()));
+        if (response.getHeader(HEADER_ETAG) != null) {
+            newMeta.setProperty(KEY_ETAG, response.getHeader(HEADER_ETAG));
+        }
+        if (response.getHeader(HEADER_LAST_MODIFIED) != null) {
+            newMeta.setProperty(KEY_LAST_MODIFIED, response.getHeader(HEADER_LAST_MODIFIED));
+        }
+
+        Files.createDirectories(dir);
+        writeAtomically(bodyPath, body);
+        writeMeta(metaPath, newMeta);
+
+        return body;
+    }
+
+    private static String readBody(Path bodyPath) throws IOException {
+        return new String(Files.readAllBytes(bodyPath), StandardCharsets.UTF_8);
+    }
+
+    private boolean isFresh(Properties meta) {
+        if (maxAge.isZero() || maxAge.isNegative()) {
+            return false;
+        }
+
+        try {
+            long fetchedAt = Long.parseLong(meta.getProperty(KEY_FETCHED_AT, "0"));
+            return System.currentTimeMillis() - fetchedAt < maxAge.toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private Properties readMeta(Path path) throws IOException {
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            meta.load(reader);
+        }
+        return meta;
+    }
+
+    private void writeMeta(Path path, Properties meta) throws IOException {
+        Path tmp = Files.createTempFile(dir, "meta", ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            meta.store(writer, null);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeAtomically(Path path, String data) throws IOException {
+        Path tmp = Files.createTempFile(dir, "body", ".tmp");
+        Files.write(tmp, data.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String key(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package mm.parking.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transport on top of {@link HttpClient}. One client is shared by all requests, so
+ * connections to the same host are kept alive and reused instead of opening a new one
+ * for every page. Responses are requested gzip compressed and redirects are followed.
+ */
+public class HttpClientTransport implements Transport {
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+
+    // the same browser user agent jsoup sends, some servers reject unknown clients
+    private static final String USER_AGENT = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_11_6) AppleWebKit/537.36 "
+            + "(KHTML, like Gecko) Chrome/53.0.2785.143 Safari/537.36";
+
+    private final HttpClient client;
+    private final Duration readTimeout;
+
+    public HttpClientTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * @param connectTimeout time to wait for a connection to be established
+     * @param readTimeout    time to wait for the response once the request is sent
+     */
+    public HttpClientTransport(Duration connectTimeout, Duration readTimeout) {
+        this(connectTimeout, readTimeout, null);
+    }
+
+    /**
+     * @param executor runs the response handling, or null for the client's own pool
+     */
+    public HttpClientTransport(Duration connectTimeout, Duration readTimeout, Executor executor) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                // HTTP/1.1 with keep-alive, no h2c upgrade attempts on plain http
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        this.client = builder.build();
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> fetch(String url, Map<String, String> headers) {
+        HttpRequest.Builder request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid URL: " + url, e));
+        }
+
+        request.timeout(readTimeout)
+                .header("Accept-Encoding", "gzip")
+                .header("User-Agent", USER_AGENT);
+        headers.forEach(request::header);
+
+        return client.sendAsync(request.GET().build(), HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> new TransportResponse(url, response.statusCode(),
+                        response.headers().map(), decode(response)));
+    }
+
+    private static byte[] decode(HttpResponse<byte[]> response) {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        if (!encoding.equalsIgnoreCase("gzip") || response.body().length == 0) {
+            return response.body();
+        }
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(response.body().length * 4);
+            in.transferTo(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid gzip response from " + response.uri(), e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package mm.parking.client;
+
+import mm.parking.metrics.RunMetrics;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Records latency and body size of every request made through the wrapped transport.
+ * Pages served from a fresh {@link HttpCache} entry make no request and are not recorded.
+ */
+public class MeteredTransport implements Transport {
+    private final Transport transport;
+    private final RunMetrics metrics;
+
+    public MeteredTransport(Transport transport, RunMetrics metrics) {
+        this.transport = transport;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> fetch(String url, Map<String, String> headers) {
+        long start = System.nanoTime();
+        return transport.fetch(url, headers).whenComplete((response, error) -> {
+            long nanos = System.nanoTime() - start;
+            if (error != null) {
+                metrics.recordFetch(url, nanos, 0, true);
+            } else {
+                metrics.recordFetch(url, nanos, response.getBody().length, response.getStatusCode() >= 400);
+            }
+        });
+    }
+}
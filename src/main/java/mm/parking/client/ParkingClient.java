@@ -1,143 +1,186 @@
 package mm.parking.client;
 
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import mm.parking.source.SourceDescriptor;
+import org.jsoup.HttpStatusException;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads the data tables of one {@link SourceDescriptor}, by default the zagrebparking.hr
+ * pages.
+ */
 public class ParkingClient {
-    private static final String URL_PARKING_PRICES = "http://www.zagrebparking.hr/default.aspx?id=55";
-    private static final String URL_PARKING_WORK_HOURS = "http://www.zagrebparking.hr/default.aspx?id=1461";
-    // append zona_id value (1-10) in request
-    private static final String URL_PARKING_LOCATIONS = "http://www.zagrebparking.hr/default.aspx?action=filterUlica&zona_id=";
-    private static final String DEFAULT_DELIMITER = ";";
-
-    private final Map<Integer, String> zoneMap = Map.of(
-            1, "Zona 1",
-            2, "Zona 1.1",
-            3, "Zona 1.2",
-            4, "Zona 2.1",
-            5, "Zona 2.2",
-            6, "Zona 2.3",
-            7, "Zona 3",
-            8, "Zona 3 Sesvete",
-            9, "Zona 4.1",
-            10, "Zona 4.2"
-    );
-
-    public String fetchParkingPrices() throws IOException {
-        return fetch(URL_PARKING_PRICES);
+    // zones are requested one by one unless asked otherwise
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 1;
+
+    private final SourceDescriptor source;
+    private final int maxConcurrentRequests;
+    private final HttpCache cache;
+    private final Transport transport;
+
+    public ParkingClient() {
+        this(DEFAULT_MAX_CONCURRENT_REQUESTS);
     }
 
-    public String fetchParkingWorkHours() throws IOException {
-        return fetch(URL_PARKING_WORK_HOURS);
+    public ParkingClient(int maxConcurrentRequests) {
+        this(maxConcurrentRequests, null);
     }
 
-    public String fetchParkingLocations() throws IOException {
-        StringBuilder sb = new StringBuilder();
-
-        // download all entries and build output string
-        for (Map.Entry<Integer, String> entry : zoneMap.entrySet()) {
-            String zone = entry.getValue();
-            String fullUrl = URL_PARKING_LOCATIONS + entry.getKey();
-            Connection connection = Jsoup.connect(fullUrl);
-            Document document = connection.get();
-
-            /*
-            * The data is contained in a table for each document.
-            * The table has multiple rows and each row has only one column which contains
-            * the required information in the following format:
-            *
-            * <table>
-            *     ...
-            *     ...
-            *     <tr><td> Data </td></tr>
-            *     <tr><td> Data </td></tr>
-            *     <tr><td> Data </td></tr>
-            *     <tr><td> Data </td></tr>
-            *     <tr><td> Data </td></tr>
-            *     ...
-            *     ...
-            * </table>
-            * */
-
-            // get the data table
-            Elements tables = document.getElementsByTag("table");
-            Element targetTable = tables.get(0);
-
-            Elements rows = targetTable.getElementsByTag("tr");
-            rows.forEach(row -> {
-                Elements columns = row.getElementsByTag("td");
-                columns.forEach(column -> {
-                    sb.append(zone)
-                            .append(DEFAULT_DELIMITER)
-                            .append(column.text());
-                });
-                sb.append(System.lineSeparator());
-            });
+    /**
+     * @param cache page cache to use, or null to always download the full pages
+     */
+    public ParkingClient(int maxConcurrentRequests, HttpCache cache) {
+        this(maxConcurrentRequests, cache, new HttpClientTransport());
+    }
+
+    /**
+     * @param cache     page cache to use, or null to always download the full pages
+     * @param transport used for requests that do not go through the cache
+     */
+    public ParkingClient(int maxConcurrentRequests, HttpCache cache, Transport transport) {
+        this(SourceDescriptor.ZAGREB, maxConcurrentRequests, cache, transport);
+    }
+
+    /**
+     * @param cache     page cache to use, or null to always download the full pages
+     * @param transport used for requests that do not go through the cache
+     */
+    public ParkingClient(SourceDescriptor source, int maxConcurrentRequests, HttpCache cache, Transport transport) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("Max concurrent requests must be positive: " + maxConcurrentRequests);
         }
 
-        String data = sb.toString();
+        this.source = source;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.cache = cache;
+        this.transport = transport;
+    }
+
+    /**
+     * @return rows of the price table, each row is an array of its cell texts
+     */
+    public List<String[]> fetchParkingPrices() throws IOException {
+        return Futures.await(fetchParkingPricesAsync());
+    }
+
+    public CompletableFuture<List<String[]>> fetchParkingPricesAsync() {
+        return fetchTable(source.getPricesUrl(), "prices");
+    }
+
+    /**
+     * @return rows of the work hours table, each row is an array of its cell texts
+     */
+    public List<String[]> fetchParkingWorkHours() throws IOException {
+        return Futures.await(fetchParkingWorkHoursAsync());
+    }
+
+    public CompletableFuture<List<String[]>> fetchParkingWorkHoursAsync() {
+        return fetchTable(source.getWorkHoursUrl(), "work hours");
+    }
 
-        return data;
+    /**
+     * @return one row per location in zone order, each row is a [zone, address] pair
+     */
+    public List<String[]> fetchParkingLocations() throws IOException {
+        return Futures.await(fetchParkingLocationsAsync());
     }
 
-    private String fetch(String url) throws IOException {
-        Connection connection = Jsoup.connect(url);
-        Document document = connection.get();
-
-        /*
-         *  The data we need is contained inside a table which is part of pageContent div.
-         *  The format is like following:
-         *
-         *  <div class="pageContent">
-         *      ...
-         *      ...
-         *      <table>
-         *          <tr>
-         *              <td>Data ...</td>
-         *              <td>Data ...</td>
-         *          </tr>
-         *          <tr>
-         *              <td>Data ...</td>
-         *              <td>Data ...</td>
-         *          </tr>
-         *          ...
-         *          ...
-         *      </table>
-         *      ...
-         *      <table></table>
-         *  </div>
-         *
-         *  The pricing/work_hours information we need is contained inside the first table,
-         *  so the code below first retrieves the wrapper div and then all the tables
-         *  that it contains. The target table should be first in the list. After
-         *  the table is obtained the data we are interested in is stored in one
-         *  string variable and returned to the caller.
-         * */
-
-        Elements pageContentDiv = document.getElementsByClass("pageContent");
-        Elements tables = pageContentDiv.get(0).getElementsByTag("table");
-        Element targetTable = tables.get(0);
-
-        Elements rows = targetTable.getElementsByTag("tr");
-        StringBuilder sb = new StringBuilder();
-
-        // extract data from each row/column with ; -> semicolon as default delimiter
-        rows.forEach(row -> {
-            Elements columns = row.getElementsByTag("td");
-            columns.forEach(column -> {
-                sb.append(column.text()).append(DEFAULT_DELIMITER);
-            });
-            sb.append(System.lineSeparator());
+    /**
+     * Requests the zones with at most max concurrent requests in flight, the next zone is
+     * requested when one completes. No thread waits for the responses. After a failure no
+     * further zones are requested and the result fails.
+     */
+    public CompletableFuture<List<String[]>> fetchParkingLocationsAsync() {
+        List<Map.Entry<Integer, String>> zones = new ArrayList<>(source.getZones().entrySet());
+        if (zones.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+
+        // one future per zone, kept in zone order so that the rows are joined the same way
+        // regardless of which request finishes first
+        List<CompletableFuture<List<String[]>>> results = new ArrayList<>(zones.size());
+        for (int i = 0; i < zones.size(); i++) {
+            results.add(new CompletableFuture<>());
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < Math.min(maxConcurrentRequests, zones.size()); i++) {
+            fetchNextZone(zones, next, failed, results);
+        }
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<String[]> locations = new ArrayList<>();
+            for (CompletableFuture<List<String[]>> result : results) {
+                locations.addAll(result.join());
+            }
+            return locations;
         });
+    }
 
-        String data = sb.toString();
+    /**
+     * @param failed shared by all request chains, set when any of them fails
+     */
+    private void fetchNextZone(List<Map.Entry<Integer, String>> zones, AtomicInteger next, AtomicBoolean failed,
+                               List<CompletableFuture<List<String[]>>> results) {
+        if (failed.get()) {
+            return;
+        }
+        int index = next.getAndIncrement();
+        if (index >= zones.size()) {
+            return;
+        }
+
+        Map.Entry<Integer, String> zone = zones.get(index);
+        // async, so a chain of pages that complete at once (e.g. fresh cache entries) does
+        // not grow the stack by one call per zone
+        fetch(source.getLocationsUrl(zone.getKey()),
+                page -> TableExtractor.extractLocations(page, zone.getValue(), source.getLocationsTableClass()))
+                .whenCompleteAsync((rows, error) -> {
+                    if (error != null) {
+                        failed.set(true);
+                        results.forEach(result -> result.completeExceptionally(error));
+                    } else {
+                        results.get(index).complete(rows);
+                        fetchNextZone(zones, next, failed, results);
+                    }
+                });
+    }
+
+    private CompletableFuture<List<String[]>> fetchTable(String url, String name) {
+        if (url == null) {
+            return CompletableFuture.failedFuture(
+                    new IOException("Source " + source.getName() + " has no " + name + " page"));
+        }
+        return fetch(url, page -> TableExtractor.extractTable(page, source.getTableClass()));
+    }
+
+    private CompletableFuture<List<String[]>> fetch(String url, Futures.IOFunction<Reader, List<String[]>> extractor) {
+        CompletableFuture<Reader> page;
+        if (cache != null) {
+            page = cache.fetchAsync(url).thenApply(StringReader::new);
+        } else {
+            page = transport.fetch(url, Collections.emptyMap()).thenApply(Futures.unchecked(response -> {
+                if (response.getStatusCode() < 200 || response.getStatusCode() >= 400) {
+                    throw new HttpStatusException("HTTP error fetching URL", response.getStatusCode(), url);
+                }
+                return response.newReader();
+            }));
+        }
 
-        return data;
+        return page.thenApply(Futures.unchecked(reader -> {
+            try (Reader in = reader) {
+                return extractor.apply(in);
+            }
+        }));
     }
 }
@@ -0,0 +1,309 @@
+package mm.parking.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the requests sent through the wrapped transport within what the server can take:
+ *
+ * - a token bucket caps the request rate, allowing short bursts,
+ * - the number of requests in flight adapts AIMD style. It grows by one per window of
+ *   fast successful responses and is halved when a request fails, is answered with
+ *   429/5xx or takes much longer than the fastest recent responses,
+ * - failed and 429/5xx requests are retried a bounded number of times after a jittered
+ *   exponential backoff, or after the server's Retry-After if that is longer.
+ *
+ * No thread waits: queued requests are sent when an earlier one completes or from a
+ * delayed executor. When the retries run out the caller gets the last response or error.
+ */
+public class RateLimitedTransport implements Transport {
+    public static final double UNLIMITED_RATE = Double.POSITIVE_INFINITY;
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final Duration DEFAULT_BASE_BACKOFF = Duration.ofMillis(500);
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(30);
+
+    // a response this many times slower than the baseline counts as congestion
+    private static final double LATENCY_TOLERANCE = 3.0;
+    // share of a slower response added to the baseline, so it follows lasting changes
+    private static final double BASELINE_DRIFT = 0.05;
+    private static final double DECREASE_FACTOR = 0.5;
+
+    private static final int STATUS_TOO_MANY_REQUESTS = 429;
+    private static final int STATUS_SERVER_ERROR = 500;
+
+    private final Transport transport;
+    private final double requestsPerSecond;
+    private final double burst;
+    private final int maxConcurrency;
+    private final int maxRetries;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    // guarded by this
+    private final Deque<Request> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastDecreaseNanos;
+    private double baselineNanos = -1;
+
+    private RateLimitedTransport(Builder builder) {
+        if (builder.transport == null) {
+            throw new IllegalArgumentException("Transport not set");
+        }
+        if (!(builder.requestsPerSecond > 0)) {
+            throw new IllegalArgumentException("Request rate must be positive: " + builder.requestsPerSecond);
+        }
+        if (builder.maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be positive: " + builder.maxConcurrency);
+        }
+        if (builder.maxRetries < 0) {
+            throw new IllegalArgumentException("Max retries must not be negative: " + builder.maxRetries);
+        }
+
+        this.transport = builder.transport;
+        this.requestsPerSecond = builder.requestsPerSecond;
+        this.burst = Math.max(1, builder.burst);
+        this.maxConcurrency = builder.maxConcurrency;
+        this.maxRetries = builder.maxRetries;
+        this.baseBackoffNanos = builder.baseBackoff.toNanos();
+        this.maxBackoffNanos = builder.maxBackoff.toNanos();
+
+        this.limit = maxConcurrency;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.lastDecreaseNanos = lastRefillNanos;
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> fetch(String url, Map<String, String> headers) {
+        Request request = new Request(url, headers);
+        enqueue(request);
+        return request.result;
+    }
+
+    /**
+     * @return the current number of requests allowed in flight
+     */
+    public synchronized int getConcurrencyLimit() {
+        return (int) limit;
+    }
+
+    private void enqueue(Request request) {
+        synchronized (this) {
+            waiting.add(request);
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Request request;
+            long delay;
+            synchronized (this) {
+                if (waiting.isEmpty() || inFlight >= (int) limit) {
+                    return;
+                }
+                request = waiting.poll();
+                inFlight++;
+                delay = reserveToken();
+            }
+
+            if (delay > 0) {
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> send(request));
+            } else {
+                send(request);
+            }
+        }
+    }
+
+    /**
+     * Takes a token, the bucket may go into debt.
+     *
+     * @return nanoseconds until the taken token is available
+     */
+    private long reserveToken() {
+        if (requestsPerSecond == UNLIMITED_RATE) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * requestsPerSecond / 1e9);
+        lastRefillNanos = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / requestsPerSecond * 1e9);
+    }
+
+    private void send(Request request) {
+        request.startNanos = System.nanoTime();
+        CompletableFuture<TransportResponse> response;
+        try {
+            response = transport.fetch(request.url, request.headers);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        // async, a response that completes inline would otherwise send the next request from
+        // this call and grow the stack by one send per queued request
+        response.whenCompleteAsync((result, error) -> complete(request, result, error));
+    }
+
+    private void complete(Request request, TransportResponse response, Throwable error) {
+        long now = System.nanoTime();
+        long latency = now - request.startNanos;
+        boolean retryable = error != null ? isIOException(error) : isRetryable(response.getStatusCode());
+
+        synchronized (this) {
+            inFlight--;
+            boolean slow = baselineNanos >= 0 && latency > baselineNanos * LATENCY_TOLERANCE;
+            if (error != null || retryable || slow) {
+                decrease(request.startNanos, now);
+            } else {
+                limit = Math.min(maxConcurrency, limit + 1 / limit);
+            }
+
+            // only responses that did not fail tell how fast the server can be
+            if (error == null && !retryable) {
+                if (baselineNanos < 0 || latency < baselineNanos) {
+                    baselineNanos = latency;
+                } else {
+                    baselineNanos += (latency - baselineNanos) * BASELINE_DRIFT;
+                }
+            }
+        }
+
+        if (retryable && request.retries < maxRetries) {
+            request.retries++;
+            long backoff = backoffNanos(request.retries, response);
+            CompletableFuture.delayedExecutor(backoff, TimeUnit.NANOSECONDS).execute(() -> enqueue(request));
+        } else if (error != null) {
+            request.result.completeExceptionally(error);
+        } else {
+            request.result.complete(response);
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Requests that were already in flight when the limit was last decreased report the
+     * same congestion, only later requests can decrease it again.
+     */
+    private void decrease(long startNanos, long now) {
+        if (startNanos - lastDecreaseNanos > 0) {
+            limit = Math.max(1, limit * DECREASE_FACTOR);
+            lastDecreaseNanos = now;
+        }
+    }
+
+    private long backoffNanos(int retry, TransportResponse response) {
+        long ceiling = Math.min(maxBackoffNanos, baseBackoffNanos << Math.min(retry - 1, 30));
+        long backoff = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+
+        if (response != null) {
+            String retryAfter = response.getHeader("Retry-After");
+            if (retryAfter != null) {
+                try {
+                    long seconds = Long.parseLong(retryAfter.trim());
+                    backoff = Math.max(backoff, Math.min(maxBackoffNanos, TimeUnit.SECONDS.toNanos(seconds)));
+                } catch (NumberFormatException e) {
+                    // an HTTP date, the computed backoff is used instead
+                }
+            }
+        }
+        return backoff;
+    }
+
+    private static boolean isRetryable(int statusCode) {
+        return statusCode == STATUS_TOO_MANY_REQUESTS || statusCode >= STATUS_SERVER_ERROR;
+    }
+
+    private static boolean isIOException(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof IOException || error instanceof UncheckedIOException;
+    }
+
+    private static final class Request {
+        final String url;
+        final Map<String, String> headers;
+        final CompletableFuture<TransportResponse> result = new CompletableFuture<>();
+        int retries;
+        long startNanos;
+
+        Request(String url, Map<String, String> headers) {
+            this.url = url;
+            this.headers = headers;
+        }
+    }
+
+    public static class Builder {
+        private Transport transport;
+        private double requestsPerSecond = UNLIMITED_RATE;
+        private double burst = 1;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private Duration baseBackoff = DEFAULT_BASE_BACKOFF;
+        private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+
+        private Builder() {
+
+        }
+
+        public static Builder newBuilder() {
+            return new Builder();
+        }
+
+        public RateLimitedTransport build() {
+            return new RateLimitedTransport(this);
+        }
+
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @param burst requests that can be sent at once after an idle period
+         */
+        public Builder requestsPerSecond(double requestsPerSecond, double burst) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * Upper bound of the adaptive limit, which also starts here. Defaults to
+         * {@link #DEFAULT_MAX_CONCURRENCY}, the limit comes down on its own when the
+         * server can not keep up.
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Retry n waits a random time between half and all of min(base * 2^(n-1), max).
+         */
+        public Builder backoff(Duration base, Duration max) {
+            this.baseBackoff = base;
+            this.maxBackoff = max;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package mm.parking.client;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts table rows from zagrebparking.hr pages. Used for live pages as well as
+ * for pages read from disk.
+ *
+ * Pages are scanned as a stream and reading stops as soon as the data table is closed,
+ * the rest of the page is never parsed.
+ */
+public final class TableExtractor {
+    /**
+     * Class of the div holding the price and work hours tables on zagrebparking.hr.
+     */
+    public static final String CLASS_PAGE_CONTENT = "pageContent";
+
+    // bytes searched for a <meta> charset when the charset of a page is not known
+    private static final int CHARSET_SNIFF_LENGTH = 2048;
+    private static final Pattern META_CHARSET = Pattern.compile("charset\\s*=\\s*[\"']?([\\w.:-]+)",
+            Pattern.CASE_INSENSITIVE);
+
+    private TableExtractor() {
+
+    }
+
+    /**
+     * @return rows of the first table inside the pageContent div, each row is an array of
+     * its cell texts
+     */
+    public static List<String[]> extractContentTable(Reader page) throws IOException {
+        /*
+         *  The data we need is contained inside a table which is part of pageContent div.
+         *  The format is like following:
+         *
+         *  <div class="pageContent">
+         *      ...
+         *      ...
+         *      <table>
+         *          <tr>
+         *              <td>Data ...</td>
+         *              <td>Data ...</td>
+         *          </tr>
+         *          <tr>
+         *              <td>Data ...</td>
+         *              <td>Data ...</td>
+         *          </tr>
+         *          ...
+         *          ...
+         *      </table>
+         *      ...
+         *      <table></table>
+         *  </div>
+         *
+         *  The pricing/work_hours information we need is contained inside the first table,
+         *  so the page is only read up to the end of that table. The text of each cell is
+         *  collected row by row and returned to the caller.
+         * */
+
+        return extractTable(page, CLASS_PAGE_CONTENT);
+    }
+
+    /**
+     * @param containerClass class of the element whose first table is read, or null for
+     *                       the first table of the page
+     * @return rows of the table, each row is an array of its cell texts
+     */
+    public static List<String[]> extractTable(Reader page, String containerClass) throws IOException {
+        List<String[]> data = new ArrayList<>();
+
+        // rows without data cells (e.g. <th> only) are kept as empty rows
+        new TableScanner(page, containerClass).scan(data::add);
+
+        // trailing empty rows carry no information
+        while (!data.isEmpty() && data.get(data.size() - 1).length == 0) {
+            data.remove(data.size() - 1);
+        }
+
+        return data;
+    }
+
+    /**
+     * Hands every row of the first table inside the pageContent div to the consumer as soon
+     * as it is read.
+     */
+    public static void scanContentTable(Reader page, Consumer<String[]> rows) throws IOException {
+        new TableScanner(page, CLASS_PAGE_CONTENT).scan(rows);
+    }
+
+    /**
+     * @return one [zone, address] row per cell of the first table in the page
+     */
+    public static List<String[]> extractLocations(Reader page, String zone) throws IOException {
+        /*
+        * The data is contained in a table for each document.
+        * The table has multiple rows and each row has only one column which contains
+        * the required information in the following format:
+        *
+        * <table>
+        *     ...
+        *     ...
+        *     <tr><td> Data </td></tr>
+        *     <tr><td> Data </td></tr>
+        *     <tr><td> Data </td></tr>
+        *     <tr><td> Data </td></tr>
+        *     <tr><td> Data </td></tr>
+        *     ...
+        *     ...
+        * </table>
+        * */
+
+        return extractLocations(page, zone, null);
+    }
+
+    /**
+     * @param containerClass class of the element whose first table is read, or null for
+     *                       the first table of the page
+     * @return one [zone, address] row per cell of the table
+     */
+    public static List<String[]> extractLocations(Reader page, String zone, String containerClass) throws IOException {
+        // each cell is one location, tagged with the zone it belongs to
+        List<String[]> locations = new ArrayList<>();
+        new TableScanner(page, containerClass).scan(row -> {
+            for (String cell : row) {
+                locations.add(new String[] { zone, cell });
+            }
+        });
+
+        return locations;
+    }
+
+    /**
+     * @param charset charset of the page, or null to take it from the page's meta tag
+     *                (UTF-8 if there is none)
+     */
+    public static Reader newReader(InputStream in, String charset) throws IOException {
+        if (charset != null) {
+            return new InputStreamReader(in, toCharset(charset));
+        }
+
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(CHARSET_SNIFF_LENGTH);
+        byte[] head = new byte[CHARSET_SNIFF_LENGTH];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = buffered.read(head, length, head.length - length)) != -1) {
+            length += read;
+        }
+        buffered.reset();
+
+        Matcher matcher = META_CHARSET.matcher(new String(head, 0, length, StandardCharsets.ISO_8859_1));
+        return new InputStreamReader(buffered, matcher.find() ? toCharset(matcher.group(1)) : StandardCharsets.UTF_8);
+    }
+
+    private static Charset toCharset(String name) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
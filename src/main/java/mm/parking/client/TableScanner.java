@@ -0,0 +1,507 @@
+package mm.parking.client;
+
+import org.jsoup.nodes.Entities;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Scans HTML as a stream of tags and text and hands the rows of one table to a consumer
+ * as soon as each row is complete. Reading stops at the end tag of that table, so the
+ * rest of the page is never read and no DOM is built.
+ *
+ * Cell texts are the same as jsoup's {@code Element.text()}: entities are decoded,
+ * whitespace is collapsed and block elements and line breaks separate words. Rows of
+ * tables nested in a cell are not reported, their text becomes part of the cell.
+ */
+final class TableScanner {
+    // block tags as jsoup defines them, plus br, they separate words in the cell text
+    private static final Set<String> BLOCK_TAGS = Set.of(
+            "html", "head", "body", "frameset", "script", "noscript", "style", "meta", "link", "title",
+            "frame", "noframes", "section", "nav", "aside", "hgroup", "header", "footer", "p", "h1", "h2",
+            "h3", "h4", "h5", "h6", "ul", "ol", "pre", "div", "blockquote", "hr", "address", "figure",
+            "figcaption", "form", "fieldset", "ins", "del", "dl", "dt", "dd", "li", "table", "caption",
+            "thead", "tfoot", "tbody", "colgroup", "col", "tr", "th", "td", "video", "audio", "canvas",
+            "details", "menu", "plaintext", "template", "article", "main", "svg", "math", "br");
+    // content is not markup, text of the first two is dropped, of the others kept
+    private static final Set<String> SCRIPT_TAGS = Set.of("script", "style");
+    private static final Set<String> RAW_TEXT_TAGS = Set.of("script", "style", "textarea", "title");
+
+    // numeric references 0x80 - 0x9F are read as windows-1252, like browsers and jsoup do
+    private static final char[] WINDOWS_1252 = {
+            '\u20AC', '\u0081', '\u201A', '\u0192', '\u201E', '\u2026', '\u2020', '\u2021',
+            '\u02C6', '\u2030', '\u0160', '\u2039', '\u0152', '\u008D', '\u017D', '\u008F',
+            '\u0090', '\u2018', '\u2019', '\u201C', '\u201D', '\u2022', '\u2013', '\u2014',
+            '\u02DC', '\u2122', '\u0161', '\u203A', '\u0153', '\u009D', '\u017E', '\u0178'
+    };
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+
+    // element whose first table is scanned, null to scan the first table of the page
+    private final String containerClass;
+    private int containerDepth;
+    private boolean containerSeen;
+
+    private Consumer<String[]> rows;
+    private int tableDepth;
+    private List<String> row;
+    private boolean inCell;
+
+    // reused for every cell and tag, a page allocates little more than the cell strings
+    private final StringBuilder cell = new StringBuilder();
+    private final StringBuilder decoded = new StringBuilder();
+    private final StringBuilder attribute = new StringBuilder();
+    private final StringBuilder rawText = new StringBuilder();
+    private final StringBuilder endName = new StringBuilder();
+
+    TableScanner(Reader in, String containerClass) {
+        this.in = in;
+        this.containerClass = containerClass;
+    }
+
+    /**
+     * Reports the rows of the first table inside the first div with the container class
+     * (or of the first table of the page), each row as an array of its td texts.
+     *
+     * @throws IOException if the page has no such table
+     */
+    void scan(Consumer<String[]> rows) throws IOException {
+        this.rows = rows;
+        StringBuilder tagName = new StringBuilder();
+        int c;
+        while ((c = read()) != -1) {
+            if (c != '<') {
+                if (inCell) {
+                    cell.append((char) c);
+                }
+                continue;
+            }
+
+            c = read();
+            if (c == '!') {
+                skipDeclaration();
+            } else if (c == '?') {
+                skipPast('>');
+            } else if (c == '/') {
+                if (readName(read(), tagName) != '>') {
+                    skipPast('>');
+                }
+                if (endTag(tagName.toString())) {
+                    return;
+                }
+            } else if (isLetter(c)) {
+                c = readName(c, tagName);
+                String name = tagName.toString();
+                String classes = readAttributes(c, name.equals("div") && containerClass != null && !containerSeen);
+                startTag(name, classes);
+                if (RAW_TEXT_TAGS.contains(name)) {
+                    readRawText(name, inCell && !SCRIPT_TAGS.contains(name) ? cell : null);
+                    endTag(name);
+                }
+            } else if (inCell) {
+                // a '<' that does not start a tag is text
+                cell.append('<');
+                if (c != -1) {
+                    cell.append((char) c);
+                }
+            }
+        }
+
+        if (tableDepth > 0) {
+            // unclosed table at the end of the page
+            finishRow();
+            return;
+        }
+        throw new IOException(containerClass != null && !containerSeen
+                ? "No " + containerClass + " div in page" : "No data table in page");
+    }
+
+    private void startTag(String name, String classes) {
+        if (tableDepth == 0) {
+            if (containerClass != null) {
+                if (name.equals("div")) {
+                    if (containerDepth > 0) {
+                        containerDepth++;
+                    } else if (!containerSeen && hasClass(classes, containerClass)) {
+                        containerSeen = true;
+                        containerDepth = 1;
+                    }
+                }
+                if (containerDepth == 0) {
+                    return;
+                }
+            }
+            if (name.equals("table")) {
+                tableDepth = 1;
+            }
+            return;
+        }
+
+        if (name.equals("table")) {
+            tableDepth++;
+        }
+        if (tableDepth == 1) {
+            switch (name) {
+                case "tr":
+                    finishRow();
+                    row = new ArrayList<>();
+                    return;
+                case "td":
+                    closeCell();
+                    if (row == null) {
+                        row = new ArrayList<>();
+                    }
+                    cell.setLength(0);
+                    inCell = true;
+                    return;
+                case "th":
+                    // header cells are not data cells, their text is dropped
+                    closeCell();
+                    return;
+                default:
+                    break;
+            }
+        }
+        if (inCell && BLOCK_TAGS.contains(name)) {
+            cell.append(' ');
+        }
+    }
+
+    /**
+     * @return true once the scanned table is closed
+     */
+    private boolean endTag(String name) throws IOException {
+        if (tableDepth == 0) {
+            if (containerDepth > 0 && name.equals("div") && --containerDepth == 0) {
+                throw new IOException("No data table in " + containerClass + " div");
+            }
+            return false;
+        }
+
+        if (name.equals("table")) {
+            if (--tableDepth == 0) {
+                finishRow();
+                return true;
+            }
+        }
+        if (tableDepth == 1) {
+            switch (name) {
+                case "tr":
+                    finishRow();
+                    return false;
+                case "td":
+                case "th":
+                    closeCell();
+                    return false;
+                default:
+                    break;
+            }
+        }
+        if (inCell && BLOCK_TAGS.contains(name)) {
+            cell.append(' ');
+        }
+        return false;
+    }
+
+    private void closeCell() {
+        if (inCell) {
+            row.add(normalize(decode(cell)));
+            inCell = false;
+        }
+    }
+
+    private void finishRow() {
+        closeCell();
+        if (row != null) {
+            rows.accept(row.toArray(new String[0]));
+            row = null;
+        }
+    }
+
+    /**
+     * Decodes character references the way jsoup does in text: named references need
+     * a ';' unless they are one of the legacy names like "&amp" or "&copy".
+     */
+    private CharSequence decode(StringBuilder text) {
+        if (text.indexOf("&") < 0) {
+            return text;
+        }
+
+        decoded.setLength(0);
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int end = c == '&' ? decodeReference(text, i + 1) : -1;
+            if (end < 0) {
+                decoded.append(c);
+                i++;
+            } else {
+                i = end;
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Appends the character of the reference starting after '&' at start.
+     *
+     * @return index after the reference, -1 if there is no valid reference
+     */
+    private int decodeReference(StringBuilder text, int start) {
+        int length = text.length();
+        if (start < length && text.charAt(start) == '#') {
+            int i = start + 1;
+            boolean hex = i < length && (text.charAt(i) == 'x' || text.charAt(i) == 'X');
+            if (hex) {
+                i++;
+            }
+
+            int digits = i;
+            long value = 0;
+            while (i < length && Character.digit(text.charAt(i), hex ? 16 : 10) >= 0) {
+                value = Math.min(value * (hex ? 16 : 10) + Character.digit(text.charAt(i), hex ? 16 : 10), Integer.MAX_VALUE);
+                i++;
+            }
+            if (i == digits) {
+                return -1;
+            }
+            if (i < length && text.charAt(i) == ';') {
+                i++;
+            }
+
+            if ((value >= 0xD800 && value <= 0xDFFF) || value > 0x10FFFF) {
+                decoded.append('\uFFFD');
+            } else if (value >= 0x80 && value < 0x80 + WINDOWS_1252.length) {
+                decoded.append(WINDOWS_1252[(int) value - 0x80]);
+            } else {
+                decoded.appendCodePoint((int) value);
+            }
+            return i;
+        }
+
+        int i = start;
+        while (i < length && isLetter(text.charAt(i))) {
+            i++;
+        }
+        while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        if (i == start) {
+            return -1;
+        }
+
+        String name = text.substring(start, i);
+        boolean semicolon = i < length && text.charAt(i) == ';';
+        if (!Entities.isBaseNamedEntity(name) && !(semicolon && Entities.isNamedEntity(name))) {
+            return -1;
+        }
+        decoded.append(Entities.getByName(name));
+        return semicolon ? i + 1 : i;
+    }
+
+    private static String normalize(CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean whitespace = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00A0') {
+                if (!whitespace) {
+                    sb.append(' ');
+                    whitespace = true;
+                }
+            } else if (c != '\u200B' && c != '\u00AD') {
+                sb.append(c);
+                whitespace = false;
+            }
+        }
+        int length = sb.length();
+        if (length > 0 && sb.charAt(length - 1) == ' ') {
+            sb.setLength(length - 1);
+        }
+        return sb.toString();
+    }
+
+    private static boolean hasClass(String classes, String name) {
+        if (classes == null) {
+            return false;
+        }
+        for (String value : classes.trim().split("\\s+")) {
+            if (value.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a tag name starting with c into name, lower case.
+     *
+     * @return first character after the name
+     */
+    private int readName(int c, StringBuilder name) throws IOException {
+        name.setLength(0);
+        while (c != -1 && c != '>' && c != '/' && !Character.isWhitespace(c)) {
+            name.append(Character.toLowerCase((char) c));
+            c = read();
+        }
+        return c;
+    }
+
+    /**
+     * Reads the attributes up to the end of the start tag. Values may be quoted or not and
+     * the '=' may have whitespace around it, e.g. {@code class = "pageContent"}.
+     *
+     * @return value of the first class attribute if wanted and present, otherwise null
+     */
+    private String readAttributes(int c, boolean wantClass) throws IOException {
+        String classes = null;
+        while (true) {
+            while (c == '/' || isWhitespace(c)) {
+                c = read();
+            }
+            if (c == -1 || c == '>') {
+                return classes;
+            }
+
+            attribute.setLength(0);
+            while (c != -1 && c != '>' && c != '/' && c != '=' && !isWhitespace(c)) {
+                attribute.append((char) c);
+                c = read();
+            }
+            while (isWhitespace(c)) {
+                c = read();
+            }
+            if (c != '=') {
+                // attribute without a value, c starts the next one
+                continue;
+            }
+
+            c = read();
+            while (isWhitespace(c)) {
+                c = read();
+            }
+            boolean isClass = wantClass && classes == null && isClassAttribute(attribute);
+            rawText.setLength(0);
+            if (c == '"' || c == '\'') {
+                int quote = c;
+                while ((c = read()) != -1 && c != quote) {
+                    if (isClass) {
+                        rawText.append((char) c);
+                    }
+                }
+                c = read();
+            } else {
+                while (c != -1 && c != '>' && !isWhitespace(c)) {
+                    if (isClass) {
+                        rawText.append((char) c);
+                    }
+                    c = read();
+                }
+            }
+            if (isClass) {
+                classes = rawText.toString();
+            }
+        }
+    }
+
+    private static boolean isClassAttribute(StringBuilder name) {
+        return name.length() == 5 && name.toString().equalsIgnoreCase("class");
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c != -1 && Character.isWhitespace(c);
+    }
+
+    private void skipDeclaration() throws IOException {
+        int first = read();
+        int second = first == '-' ? read() : -1;
+        if (first == '-' && second == '-') {
+            // comment, ends with -->
+            int dashes = 0;
+            int c;
+            while ((c = read()) != -1) {
+                if (c == '>' && dashes >= 2) {
+                    return;
+                }
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+            return;
+        }
+        if (first != '>') {
+            skipPast('>');
+        }
+    }
+
+    /**
+     * Reads up to and including the matching end tag, e.g. </script>.
+     *
+     * @param text receives the content, may be null to skip it
+     */
+    private void readRawText(String name, StringBuilder text) throws IOException {
+        StringBuilder content = rawText;
+        content.setLength(0);
+        int c;
+        while ((c = read()) != -1) {
+            if (c != '<') {
+                content.append((char) c);
+                continue;
+            }
+            int start = content.length();
+            content.append('<');
+            if ((c = read()) != '/') {
+                if (c != -1) {
+                    position--;
+                }
+                continue;
+            }
+            content.append('/');
+            c = readName(read(), endName);
+            if (endName.toString().equals(name)) {
+                if (c != '>') {
+                    skipPast('>');
+                }
+                content.setLength(start);
+                break;
+            }
+            content.append(endName);
+            if (c != -1) {
+                content.append((char) c);
+            }
+        }
+        if (text != null) {
+            text.append(content);
+        }
+    }
+
+    private void skipPast(char end) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != end) {
+            // skip
+        }
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,19 @@
+package mm.parking.client;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends GET requests for ParkingClient and HttpCache.
+ *
+ * Implementations complete the future with the response for any status code, only
+ * failures to get a response at all (connection errors, timeouts) complete it
+ * exceptionally.
+ */
+public interface Transport {
+
+    /**
+     * @param headers additional request headers, e.g. conditional request validators
+     */
+    CompletableFuture<TransportResponse> fetch(String url, Map<String, String> headers);
+}
@@ -0,0 +1,72 @@
+package mm.parking.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Status, headers and the decoded (uncompressed) body of a response.
+ */
+public class TransportResponse {
+    private final String url;
+    private final int statusCode;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+
+    public TransportResponse(String url, int statusCode, Map<String, List<String>> headers, byte[] body) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.headers.putAll(headers);
+        this.body = body;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return first value of the header, null if the response does not have it
+     */
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return charset from the Content-Type header, null if not given
+     */
+    public String getCharset() {
+        String contentType = getHeader("Content-Type");
+        if (contentType == null) {
+            return null;
+        }
+
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                return trimmed.substring(8).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return reader over the body in the charset of the response, or of the page's meta
+     * tag if the response does not name one
+     */
+    public Reader newReader() throws IOException {
+        return TableExtractor.newReader(new ByteArrayInputStream(body), getCharset());
+    }
+}
@@ -0,0 +1,420 @@
+package mm.parking.history;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import mm.parking.storage.JsonStorage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only history of one dataset.
+ *
+ * Every version is stored as a delta (added and removed records) against the previous
+ * version, one JSON line per version. Every added record carries its position in the new
+ * version, so a replayed version has the records in the order they were appended. A
+ * version that only reorders the remaining records is stored in full. The log is split
+ * into segments, the first entry of each segment additionally carries the full dataset
+ * so a segment can be replayed on its own. The index file lists the first timestamp of
+ * every segment, which is all a query needs to find the segments covering a time range.
+ *
+ * <pre>
+ * index.txt                                  "[first timestamp] [segment file]" per line
+ * segment-[timestamp]-[sequence].jsonl       {"time":..,"full":[..],"added":[..],"addedAt":[..],"removed":[..]} per line
+ * </pre>
+ */
+public class HistoryLog<T> {
+    public static final int DEFAULT_SEGMENT_ENTRIES = 100;
+
+    private static final String INDEX_FILENAME = "index.txt";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+
+    private final Path dir;
+    private final TypeAdapter<T> adapter;
+    private final int segmentEntries;
+
+    // sparse index, one entry per segment in time order
+    private final List<Long> segmentTimes = new ArrayList<>();
+    private final List<String> segmentFiles = new ArrayList<>();
+
+    // state after the last appended version, loaded lazily from the last segment
+    private List<T> current;
+    private long lastTime = Long.MIN_VALUE;
+    private int currentSegmentEntries;
+
+    public HistoryLog(Path dir, Class<T> type) throws IOException {
+        this(dir, type, DEFAULT_SEGMENT_ENTRIES);
+    }
+
+    public HistoryLog(Path dir, Class<T> type, int segmentEntries) throws IOException {
+        if (segmentEntries < 1) {
+            throw new IllegalArgumentException("Segment entries must be positive: " + segmentEntries);
+        }
+
+        Gson gson = JsonStorage.newGson(true);
+        this.dir = dir;
+        this.adapter = gson.getAdapter(type);
+        this.segmentEntries = segmentEntries;
+
+        Files.createDirectories(dir);
+        Path index = dir.resolve(INDEX_FILENAME);
+        if (Files.isRegularFile(index)) {
+            for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int separator = line.indexOf(' ');
+                segmentTimes.add(Long.parseLong(line.substring(0, separator)));
+                segmentFiles.add(line.substring(separator + 1));
+            }
+        }
+    }
+
+    /**
+     * Appends a new version of the dataset. Nothing is written if it equals the last version.
+     *
+     * @return true if a new version was written
+     */
+    public synchronized boolean append(long time, List<T> records) throws IOException {
+        loadCurrent();
+        if (time < lastTime) {
+            throw new IllegalArgumentException("Time " + time + " is before last entry " + lastTime);
+        }
+
+        List<T> added = new ArrayList<>();
+        List<Integer> addedAt = new ArrayList<>();
+        List<T> removed = new ArrayList<>();
+        diff(current, records, added, addedAt, removed);
+        Entry<T> delta = new Entry<>(time, null, added, addedAt, removed);
+        boolean reordered = !delta.apply(current).equals(records);
+        if (added.isEmpty() && removed.isEmpty() && !reordered && !segmentFiles.isEmpty()) {
+            return false;
+        }
+
+        boolean newSegment = segmentFiles.isEmpty() || currentSegmentEntries >= segmentEntries;
+        // the sequence keeps names unique when segments start at the same time
+        String segment = newSegment
+                ? SEGMENT_PREFIX + time + "-" + segmentFiles.size() + SEGMENT_SUFFIX
+                : segmentFiles.get(segmentFiles.size() - 1);
+
+        String line = encode(time, newSegment || reordered ? records : null, added, addedAt, removed);
+        Files.write(dir.resolve(segment), Collections.singletonList(line), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        if (newSegment) {
+            // the index is written after the segment so it never points to a missing file
+            Files.write(dir.resolve(INDEX_FILENAME), Collections.singletonList(time + " " + segment),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            segmentTimes.add(time);
+            segmentFiles.add(segment);
+            currentSegmentEntries = 0;
+        }
+
+        currentSegmentEntries++;
+        current = new ArrayList<>(records);
+        lastTime = time;
+        return true;
+    }
+
+    /**
+     * @return the dataset as it was at time, empty if the log starts after time
+     */
+    public synchronized List<T> stateAt(long time) throws IOException {
+        int segment = segmentAt(time);
+        if (segment < 0) {
+            return new ArrayList<>();
+        }
+
+        List<T> state = new ArrayList<>();
+        for (Entry<T> entry : readSegment(segment)) {
+            if (entry.time > time) {
+                break;
+            }
+            state = entry.apply(state);
+        }
+        return state;
+    }
+
+    /**
+     * @return all versions written after from and up to and including to, in time order
+     */
+    public synchronized List<Change<T>> changesBetween(long from, long to) throws IOException {
+        List<Change<T>> changes = new ArrayList<>();
+        int first = Math.max(segmentAt(from), 0);
+        int last = segmentAt(to);
+        for (int segment = first; segment <= last; segment++) {
+            for (Entry<T> entry : readSegment(segment)) {
+                if (entry.time > from && entry.time <= to) {
+                    changes.add(new Change<>(entry.time, entry.added, entry.removed));
+                }
+            }
+        }
+        return changes;
+    }
+
+    private void loadCurrent() throws IOException {
+        if (current != null) {
+            return;
+        }
+
+        current = new ArrayList<>();
+        if (segmentFiles.isEmpty()) {
+            return;
+        }
+
+        List<Entry<T>> entries = readSegment(segmentFiles.size() - 1);
+        for (Entry<T> entry : entries) {
+            current = entry.apply(current);
+            lastTime = entry.time;
+        }
+        currentSegmentEntries = entries.size();
+    }
+
+    /**
+     * @return index of the last segment starting at or before time, -1 if there is none
+     */
+    private int segmentAt(long time) {
+        int index = Collections.binarySearch(segmentTimes, time);
+        if (index >= 0) {
+            // several segments can start at the same time, use the last one
+            while (index + 1 < segmentTimes.size() && segmentTimes.get(index + 1) == time) {
+                index++;
+            }
+            return index;
+        }
+        return -index - 2;
+    }
+
+    private List<Entry<T>> readSegment(int segment) throws IOException {
+        List<Entry<T>> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(dir.resolve(segmentFiles.get(segment)), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    entries.add(decode(line));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private String encode(long time, List<T> full, List<T> added, List<Integer> addedAt, List<T> removed)
+            throws IOException {
+        StringWriter sw = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(sw)) {
+            writer.beginObject();
+            writer.name("time").value(time);
+            if (full != null) {
+                writer.name("full");
+                writeRecords(writer, full);
+            }
+            writer.name("added");
+            writeRecords(writer, added);
+            writer.name("addedAt");
+            writer.beginArray();
+            for (int position : addedAt) {
+                writer.value(position);
+            }
+            writer.endArray();
+            writer.name("removed");
+            writeRecords(writer, removed);
+            writer.endObject();
+        }
+        return sw.toString();
+    }
+
+    private void writeRecords(JsonWriter writer, List<T> records) throws IOException {
+        writer.beginArray();
+        for (T record : records) {
+            adapter.write(writer, record);
+        }
+        writer.endArray();
+    }
+
+    private Entry<T> decode(String line) throws IOException {
+        long time = 0;
+        List<T> full = null;
+        List<T> added = new ArrayList<>();
+        List<Integer> addedAt = new ArrayList<>();
+        List<T> removed = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new StringReader(line))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "time":
+                        time = reader.nextLong();
+                        break;
+                    case "full":
+                        full = readRecords(reader);
+                        break;
+                    case "added":
+                        added = readRecords(reader);
+                        break;
+                    case "addedAt":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            addedAt.add(reader.nextInt());
+                        }
+                        reader.endArray();
+                        break;
+                    case "removed":
+                        removed = readRecords(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        }
+        if (addedAt.size() != added.size()) {
+            throw new IOException("Expected " + added.size() + " positions of added records, found "
+                    + addedAt.size() + " in entry " + time);
+        }
+        return new Entry<>(time, full, added, addedAt, removed);
+    }
+
+    private List<T> readRecords(JsonReader reader) throws IOException {
+        List<T> records = new ArrayList<>();
+        reader.beginArray();
+        while (reader.peek() != JsonToken.END_ARRAY) {
+            records.add(adapter.read(reader));
+        }
+        reader.endArray();
+        return records;
+    }
+
+    /**
+     * Multiset difference, records are compared with equals.
+     *
+     * @param addedAt receives the position in next of every added record
+     */
+    private static <T> void diff(List<T> previous, List<T> next, List<T> added, List<Integer> addedAt,
+                                 List<T> removed) {
+        Map<T, Integer> counts = new HashMap<>();
+        for (T record : previous) {
+            counts.merge(record, 1, Integer::sum);
+        }
+        for (int i = 0; i < next.size(); i++) {
+            T record = next.get(i);
+            Integer count = counts.get(record);
+            if (count == null) {
+                added.add(record);
+                addedAt.add(i);
+            } else if (count == 1) {
+                counts.remove(record);
+            } else {
+                counts.put(record, count - 1);
+            }
+        }
+        for (T record : previous) {
+            Integer count = counts.get(record);
+            if (count != null) {
+                removed.add(record);
+                if (count == 1) {
+                    counts.remove(record);
+                } else {
+                    counts.put(record, count - 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * One version of the dataset as a delta against the previous version.
+     */
+    public static final class Change<T> {
+        private final long time;
+        private final List<T> added;
+        private final List<T> removed;
+
+        private Change(long time, List<T> added, List<T> removed) {
+            this.time = time;
+            this.added = added;
+            this.removed = removed;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public List<T> getAdded() {
+            return added;
+        }
+
+        public List<T> getRemoved() {
+            return removed;
+        }
+    }
+
+    private static final class Entry<T> {
+        private final long time;
+        private final List<T> full;
+        private final List<T> added;
+        // ascending positions of the added records in the new version
+        private final List<Integer> addedAt;
+        private final List<T> removed;
+
+        private Entry(long time, List<T> full, List<T> added, List<Integer> addedAt, List<T> removed) {
+            this.time = time;
+            this.full = full;
+            this.added = added;
+            this.addedAt = addedAt;
+            this.removed = removed;
+        }
+
+        private List<T> apply(List<T> state) {
+            if (full != null) {
+                return new ArrayList<>(full);
+            }
+
+            Map<T, Integer> removeCounts = new HashMap<>();
+            for (T record : removed) {
+                removeCounts.merge(record, 1, Integer::sum);
+            }
+
+            List<T> next = new ArrayList<>(state.size() + added.size());
+            int nextAdded = 0;
+            for (T record : state) {
+                Integer count = removeCounts.get(record);
+                if (count == null) {
+                    nextAdded = insertAdded(next, nextAdded);
+                    next.add(record);
+                } else if (count == 1) {
+                    removeCounts.remove(record);
+                } else {
+                    removeCounts.put(record, count - 1);
+                }
+            }
+            next.addAll(added.subList(nextAdded, added.size()));
+            return next;
+        }
+
+        /**
+         * Adds the records whose position is the end of next.
+         *
+         * @return index of the first added record not inserted yet
+         */
+        private int insertAdded(List<T> next, int nextAdded) {
+            while (nextAdded < added.size() && addedAt.get(nextAdded) == next.size()) {
+                next.add(added.get(nextAdded++));
+            }
+            return nextAdded;
+        }
+    }
+}
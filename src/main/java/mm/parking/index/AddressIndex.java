@@ -0,0 +1,192 @@
+package mm.parking.index;
+
+import mm.parking.ParkingLocation;
+import mm.parking.ZoneRegistry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable address to zone index. Addresses are normalized (case, diacritics and
+ * whitespace) and kept in one sorted array, so exact lookups and prefix completion
+ * are binary searches. Zones are referenced by their canonical ids, see
+ * {@link ParkingLocation#getZoneId()}, and named by their canonical names.
+ *
+ * Build a new index when the location data changes and swap the reference.
+ */
+public final class AddressIndex {
+    private final String[] keys;
+    private final String[] addresses;
+    private final int[] zoneIds;
+    // canonical zone names by zone id, null for ids without locations
+    private final String[] zones;
+    private final int zoneCount;
+
+    private AddressIndex(String[] keys, String[] addresses, int[] zoneIds, String[] zones, int zoneCount) {
+        this.keys = keys;
+        this.addresses = addresses;
+        this.zoneIds = zoneIds;
+        this.zones = zones;
+        this.zoneCount = zoneCount;
+    }
+
+    public static AddressIndex build(List<ParkingLocation> locations) {
+        Map<Integer, String> zoneNames = new HashMap<>();
+        Entry[] entries = new Entry[locations.size()];
+        int count = 0;
+        for (ParkingLocation location : locations) {
+            if (location.getAddress() == null || location.getZone() == null) {
+                continue;
+            }
+
+            zoneNames.computeIfAbsent(location.getZoneId(), id -> ZoneRegistry.canonicalName(location.getZone()));
+            entries[count++] = new Entry(normalize(location.getAddress()), location.getAddress(),
+                    location.getZoneId());
+        }
+
+        String[] zones = new String[zoneNames.isEmpty() ? 0 : Collections.max(zoneNames.keySet()) + 1];
+        for (Map.Entry<Integer, String> zone : zoneNames.entrySet()) {
+            zones[zone.getKey()] = zone.getValue();
+        }
+
+        Arrays.sort(entries, 0, count);
+
+        // drop duplicate (address, zone) pairs
+        String[] keys = new String[count];
+        String[] addresses = new String[count];
+        int[] zoneIds = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            Entry entry = entries[i];
+            if (size > 0 && keys[size - 1].equals(entry.key) && zoneIds[size - 1] == entry.zoneId) {
+                continue;
+            }
+            keys[size] = entry.key;
+            addresses[size] = entry.address;
+            zoneIds[size] = entry.zoneId;
+            size++;
+        }
+
+        return new AddressIndex(Arrays.copyOf(keys, size), Arrays.copyOf(addresses, size),
+                Arrays.copyOf(zoneIds, size), zones, zoneNames.size());
+    }
+
+    /**
+     * Lower case, without diacritics and with single spaces, e.g. "Vlaška  ulica" -> "vlaska ulica".
+     */
+    public static String normalize(String address) {
+        String decomposed = Normalizer.normalize(address, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            // d with stroke has no decomposition
+            if (c == '\u0111' || c == '\u0110') {
+                c = 'd';
+            }
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public int zoneCount() {
+        return zoneCount;
+    }
+
+    /**
+     * @return canonical name of the zone, null if no indexed address is in it
+     */
+    public String getZone(int zoneId) {
+        return zoneId >= 0 && zoneId < zones.length ? zones[zoneId] : null;
+    }
+
+    /**
+     * @return canonical ids of the zones that contain address, empty if the address is unknown
+     */
+    public int[] findZoneIds(String address) {
+        String key = normalize(address);
+        int from = lowerBound(key);
+        int to = from;
+        while (to < keys.length && keys[to].equals(key)) {
+            to++;
+        }
+        return Arrays.copyOfRange(zoneIds, from, to);
+    }
+
+    public List<String> findZones(String address) {
+        int[] ids = findZoneIds(address);
+        List<String> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(zones[id]);
+        }
+        return result;
+    }
+
+    /**
+     * @return up to limit distinct addresses starting with prefix, in sorted order
+     */
+    public List<String> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+        for (int i = lowerBound(key); i < keys.length && result.size() < limit && keys[i].startsWith(key); i++) {
+            if (i > 0 && keys[i].equals(keys[i - 1])) {
+                continue;
+            }
+            result.add(addresses[i]);
+        }
+        return result;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final String key;
+        private final String address;
+        private final int zoneId;
+
+        private Entry(String key, String address, int zoneId) {
+            this.key = key;
+            this.address = address;
+            this.zoneId = zoneId;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = key.compareTo(o.key);
+            return result != 0 ? result : Integer.compare(zoneId, o.zoneId);
+        }
+    }
+}
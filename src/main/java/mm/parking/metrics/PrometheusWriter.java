@@ -0,0 +1,60 @@
+package mm.parking.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes metrics in the Prometheus text exposition format.
+ */
+class PrometheusWriter {
+    private static final String[] NO_LABELS = new String[0];
+
+    private final Writer writer;
+
+    PrometheusWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    void family(String name, String type, String help) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    void sample(String name, double value) throws IOException {
+        sample(name, NO_LABELS, NO_LABELS, value);
+    }
+
+    void sample(String name, String[] labelNames, String[] labelValues, double value) throws IOException {
+        writeName(name, labelNames, labelValues);
+        writer.write(Double.toString(value));
+        writer.write('\n');
+    }
+
+    void sample(String name, String[] labelNames, String[] labelValues, long value) throws IOException {
+        writeName(name, labelNames, labelValues);
+        writer.write(Long.toString(value));
+        writer.write('\n');
+    }
+
+    private void writeName(String name, String[] labelNames, String[] labelValues) throws IOException {
+        writer.write(name);
+        if (labelNames.length > 0) {
+            writer.write('{');
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(labelNames[i]);
+                writer.write("=\"");
+                writer.write(escape(labelValues[i]));
+                writer.write('"');
+            }
+            writer.write('}');
+        }
+        writer.write(' ');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
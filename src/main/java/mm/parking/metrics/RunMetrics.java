@@ -0,0 +1,270 @@
+package mm.parking.metrics;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Time, bytes and row counts of the fetch, parse and store stages, collected while the
+ * program runs and exported as a JSON report and as a Prometheus text file (for the node
+ * exporter's textfile collector).
+ *
+ * Values are totals since the start of the program, in watch mode the files are
+ * rewritten after every refresh. A run records a few dozen values, so every record
+ * simply takes the lock.
+ */
+public class RunMetrics {
+    public static final String DATASET_PRICES = "prices";
+    public static final String DATASET_WORK_HOURS = "work_hours";
+    public static final String DATASET_LOCATIONS = "locations";
+    // source label of the default Zagreb pages, same as the name of the zagreb source
+    public static final String DEFAULT_SOURCE = "zagreb";
+
+    public static final String REPORT_FILENAME = "parking-metrics.json";
+    public static final String PROMETHEUS_FILENAME = "parking.prom";
+
+    private static final String[] FETCH_LABELS = { "url" };
+    private static final String[] PARSE_LABELS = { "source", "dataset" };
+    private static final String[] STORE_LABELS = { "source", "dataset", "backend" };
+
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+
+    // sorted by label values so that consecutive reports are easy to compare
+    private final Map<String, Stat> fetches = new TreeMap<>();
+    private final Map<String, Stat> parses = new TreeMap<>();
+    private final Map<String, Stat> stores = new TreeMap<>();
+
+    /**
+     * @param bytes size of the received body, 0 for failed requests and 304 responses
+     */
+    public synchronized void recordFetch(String url, long nanos, long bytes, boolean failed) {
+        Stat stat = stat(fetches, url);
+        stat.add(nanos, failed);
+        stat.bytes += bytes;
+    }
+
+    /**
+     * @param source  name of the source the rows are from
+     * @param dataset one of the DATASET constants
+     * @param rows    table rows handed to the parser
+     * @param records parsed records
+     */
+    public synchronized void recordParse(String source, String dataset, long nanos, int rows, int records) {
+        Stat stat = stat(parses, source, dataset);
+        stat.add(nanos, false);
+        stat.rows += rows;
+        stat.records += records;
+    }
+
+    /**
+     * @param source  name of the source the records are from
+     * @param dataset one of the DATASET constants
+     * @param backend name of the storage back-end, e.g. "json"
+     * @param bytes   size of the written file, 0 if the write failed
+     */
+    public synchronized void recordStore(String source, String dataset, String backend, long nanos, long bytes,
+                                         boolean failed) {
+        Stat stat = stat(stores, source, dataset, backend);
+        stat.add(nanos, failed);
+        stat.bytes += bytes;
+    }
+
+    /**
+     * Writes {@link #REPORT_FILENAME} and {@link #PROMETHEUS_FILENAME} to dir. Both files
+     * are replaced atomically so that readers never see a partially written file.
+     *
+     * @param success whether the run, or in watch mode the latest refresh, succeeded
+     */
+    public synchronized void export(Path dir, boolean success) throws IOException {
+        long durationNanos = System.nanoTime() - startNanos;
+        writeAtomically(dir.resolve(REPORT_FILENAME), writer -> writeJson(writer, durationNanos, success));
+        writeAtomically(dir.resolve(PROMETHEUS_FILENAME), writer -> writePrometheus(writer, durationNanos, success));
+    }
+
+    private void writeJson(Writer writer, long durationNanos, boolean success) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("start").value(Instant.ofEpochMilli(startMillis).toString());
+        json.name("durationMillis").value(durationNanos / NANOS_PER_MILLI);
+        json.name("success").value(success);
+
+        json.name("fetch").beginArray();
+        for (Stat stat : fetches.values()) {
+            json.beginObject();
+            writeJsonLabels(json, FETCH_LABELS, stat);
+            json.name("requests").value(stat.count);
+            json.name("errors").value(stat.errors);
+            writeJsonTimes(json, stat);
+            json.name("bytes").value(stat.bytes);
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("parse").beginArray();
+        for (Stat stat : parses.values()) {
+            json.beginObject();
+            writeJsonLabels(json, PARSE_LABELS, stat);
+            json.name("runs").value(stat.count);
+            writeJsonTimes(json, stat);
+            json.name("rows").value(stat.rows);
+            json.name("records").value(stat.records);
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("store").beginArray();
+        for (Stat stat : stores.values()) {
+            json.beginObject();
+            writeJsonLabels(json, STORE_LABELS, stat);
+            json.name("writes").value(stat.count);
+            json.name("errors").value(stat.errors);
+            writeJsonTimes(json, stat);
+            json.name("bytes").value(stat.bytes);
+            json.endObject();
+        }
+        json.endArray();
+
+        json.endObject();
+        json.flush();
+        writer.write(System.lineSeparator());
+    }
+
+    private static void writeJsonLabels(JsonWriter json, String[] names, Stat stat) throws IOException {
+        for (int i = 0; i < names.length; i++) {
+            json.name(names[i]).value(stat.labels[i]);
+        }
+    }
+
+    private static void writeJsonTimes(JsonWriter json, Stat stat) throws IOException {
+        json.name("totalMillis").value(stat.totalNanos / NANOS_PER_MILLI);
+        json.name("maxMillis").value(stat.maxNanos / NANOS_PER_MILLI);
+    }
+
+    private void writePrometheus(Writer writer, long durationNanos, boolean success) throws IOException {
+        PrometheusWriter out = new PrometheusWriter(writer);
+
+        out.family("parking_fetch_duration_seconds", "summary", "Time from sending a request to receiving the whole body.");
+        for (Stat stat : fetches.values()) {
+            out.sample("parking_fetch_duration_seconds_sum", FETCH_LABELS, stat.labels, seconds(stat.totalNanos));
+            out.sample("parking_fetch_duration_seconds_count", FETCH_LABELS, stat.labels, stat.count);
+        }
+        out.family("parking_fetch_max_duration_seconds", "gauge", "Slowest request.");
+        for (Stat stat : fetches.values()) {
+            out.sample("parking_fetch_max_duration_seconds", FETCH_LABELS, stat.labels, seconds(stat.maxNanos));
+        }
+        out.family("parking_fetch_errors_total", "counter", "Failed requests and error responses.");
+        for (Stat stat : fetches.values()) {
+            out.sample("parking_fetch_errors_total", FETCH_LABELS, stat.labels, stat.errors);
+        }
+        out.family("parking_fetch_bytes_total", "counter", "Received body bytes.");
+        for (Stat stat : fetches.values()) {
+            out.sample("parking_fetch_bytes_total", FETCH_LABELS, stat.labels, stat.bytes);
+        }
+
+        out.family("parking_parse_duration_seconds", "summary", "Time spent parsing table rows into records.");
+        for (Stat stat : parses.values()) {
+            out.sample("parking_parse_duration_seconds_sum", PARSE_LABELS, stat.labels, seconds(stat.totalNanos));
+            out.sample("parking_parse_duration_seconds_count", PARSE_LABELS, stat.labels, stat.count);
+        }
+        out.family("parking_parse_max_duration_seconds", "gauge", "Slowest parse.");
+        for (Stat stat : parses.values()) {
+            out.sample("parking_parse_max_duration_seconds", PARSE_LABELS, stat.labels, seconds(stat.maxNanos));
+        }
+        out.family("parking_parse_rows_total", "counter", "Table rows handed to the parser.");
+        for (Stat stat : parses.values()) {
+            out.sample("parking_parse_rows_total", PARSE_LABELS, stat.labels, stat.rows);
+        }
+        out.family("parking_parse_records_total", "counter", "Parsed records.");
+        for (Stat stat : parses.values()) {
+            out.sample("parking_parse_records_total", PARSE_LABELS, stat.labels, stat.records);
+        }
+
+        out.family("parking_store_duration_seconds", "summary", "Time spent writing a dataset with one back-end.");
+        for (Stat stat : stores.values()) {
+            out.sample("parking_store_duration_seconds_sum", STORE_LABELS, stat.labels, seconds(stat.totalNanos));
+            out.sample("parking_store_duration_seconds_count", STORE_LABELS, stat.labels, stat.count);
+        }
+        out.family("parking_store_max_duration_seconds", "gauge", "Slowest write.");
+        for (Stat stat : stores.values()) {
+            out.sample("parking_store_max_duration_seconds", STORE_LABELS, stat.labels, seconds(stat.maxNanos));
+        }
+        out.family("parking_store_errors_total", "counter", "Failed writes.");
+        for (Stat stat : stores.values()) {
+            out.sample("parking_store_errors_total", STORE_LABELS, stat.labels, stat.errors);
+        }
+        out.family("parking_store_bytes_total", "counter", "Written file bytes.");
+        for (Stat stat : stores.values()) {
+            out.sample("parking_store_bytes_total", STORE_LABELS, stat.labels, stat.bytes);
+        }
+
+        out.family("parking_run_start_timestamp_seconds", "gauge", "Start of the program.");
+        out.sample("parking_run_start_timestamp_seconds", startMillis / 1000.0);
+        out.family("parking_run_duration_seconds", "gauge", "Time from the start of the program to this export.");
+        out.sample("parking_run_duration_seconds", seconds(durationNanos));
+        out.family("parking_run_success", "gauge", "1 if the run, or the latest refresh in watch mode, succeeded.");
+        out.sample("parking_run_success", success ? 1 : 0);
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / NANOS_PER_SECOND;
+    }
+
+    private static Stat stat(Map<String, Stat> stats, String... labels) {
+        // label values are joined with a character that does not occur in urls or names
+        return stats.computeIfAbsent(String.join("\u0000", labels), key -> new Stat(labels));
+    }
+
+    private static void writeAtomically(Path path, Content content) throws IOException {
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                content.write(writer);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Content {
+        void write(Writer writer) throws IOException;
+    }
+
+    private static final class Stat {
+        final String[] labels;
+        long count;
+        long errors;
+        long totalNanos;
+        long maxNanos;
+        long bytes;
+        long rows;
+        long records;
+
+        Stat(String[] labels) {
+            this.labels = labels;
+        }
+
+        void add(long nanos, boolean failed) {
+            count++;
+            if (failed) {
+                errors++;
+            }
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+}
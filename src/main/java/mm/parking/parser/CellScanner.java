@@ -0,0 +1,161 @@
+package mm.parking.parser;
+
+/**
+ * Reads numbers directly from cell text without creating intermediate strings.
+ *
+ * Amounts use the Croatian decimal comma and are followed by a unit, e.g. "12,00 kn/h"
+ * or "100,00 kn". Hours are written with an "h" suffix, e.g. "2h".
+ */
+final class CellScanner {
+    // 10^n for every n that still gives an exact double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // largest mantissa that a double represents exactly
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private CellScanner() {
+
+    }
+
+    /**
+     * Parses the leading decimal number of text. A single ',' or '.' is the decimal
+     * separator. Dots before a ',', or several dots, separate thousands, e.g. "1.200,00".
+     * Anything after the number (the unit) is ignored.
+     *
+     * @throws NumberFormatException if there is no number or its separators are ambiguous,
+     *                               e.g. "1,200.00" or "1.20,00"
+     */
+    static double parseAmount(CharSequence text) {
+        int length = text.length();
+        int start = skipWhitespace(text, 0);
+
+        // find the extent of the number and what its separators mean
+        int end = start;
+        int commas = 0;
+        int dots = 0;
+        boolean dotAfterComma = false;
+        for (; end < length; end++) {
+            char c = text.charAt(end);
+            if (c == ',') {
+                commas++;
+            } else if (c == '.') {
+                dots++;
+                dotAfterComma |= commas > 0;
+            } else if (c < '0' || c > '9') {
+                break;
+            }
+        }
+        if (commas > 1 || dotAfterComma) {
+            throw new NumberFormatException("Ambiguous amount: " + text);
+        }
+        char decimalSeparator = commas == 1 ? ',' : dots == 1 ? '.' : 0;
+        char thousandsSeparator = commas == 1 && dots > 0 || dots > 1 ? '.' : 0;
+        if (thousandsSeparator != 0) {
+            checkGroups(text, start, end, decimalSeparator);
+        }
+
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean fraction = false;
+        boolean exact = true;
+        for (int pos = start; pos < end; pos++) {
+            char c = text.charAt(pos);
+            if (c == decimalSeparator) {
+                fraction = true;
+            } else if (c != thousandsSeparator) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction) {
+                    scale++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA || scale >= POWERS_OF_TEN.length) {
+                    exact = false;
+                }
+            }
+        }
+
+        if (digits == 0) {
+            throw new NumberFormatException("No amount in: " + text);
+        }
+
+        if (!exact) {
+            // too many digits to compute exactly, let the JDK handle this rare case
+            String number = text.subSequence(start, end).toString();
+            if (thousandsSeparator != 0) {
+                number = number.replace(".", "");
+            }
+            return Double.parseDouble(number.replace(',', '.'));
+        }
+
+        // both operands are exact, so the division is correctly rounded like Double.parseDouble
+        return mantissa / POWERS_OF_TEN[scale];
+    }
+
+    /**
+     * Checks that the dots in the integer part of text[start, end) separate groups of
+     * three digits, e.g. "1.200" or "12.345.678".
+     */
+    private static void checkGroups(CharSequence text, int start, int end, char decimalSeparator) {
+        int group = 0;
+        boolean first = true;
+        for (int pos = start; pos < end; pos++) {
+            char c = text.charAt(pos);
+            if (c == decimalSeparator) {
+                break;
+            }
+            if (c != '.') {
+                group++;
+            } else if (first ? group == 0 || group > 3 : group != 3) {
+                throw new NumberFormatException("Misplaced thousands separator in: " + text);
+            } else {
+                first = false;
+                group = 0;
+            }
+        }
+        if (group != 3) {
+            throw new NumberFormatException("Misplaced thousands separator in: " + text);
+        }
+    }
+
+    /**
+     * Parses hours in "Nh" format.
+     *
+     * @return the number of hours, or -1 if text is not in the expected format
+     */
+    static int parseHours(CharSequence text) {
+        int length = text.length();
+        int pos = skipWhitespace(text, 0);
+
+        int hours = 0;
+        int digits = 0;
+        for (; pos < length; pos++) {
+            char c = text.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (hours > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                return -1;
+            }
+            hours = hours * 10 + (c - '0');
+            digits++;
+        }
+
+        if (digits == 0 || pos >= length || text.charAt(pos) != 'h') {
+            return -1;
+        }
+
+        // nothing but whitespace is allowed after the suffix
+        return skipWhitespace(text, pos + 1) == length ? hours : -1;
+    }
+
+    private static int skipWhitespace(CharSequence text, int pos) {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+}
@@ -3,43 +3,82 @@ package mm.parking.parser;
 import mm.parking.ParkingLocation;
 import mm.parking.ParkingPrice;
 import mm.parking.ParkingTime;
+import mm.parking.ZoneRegistry;
+import mm.parking.metrics.RunMetrics;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class ParkingParser {
+    public static final String DEFAULT_CITY = "Zagreb";
 
-    public List<ParkingPrice> parseParkingPrices(String data) {
-        List<ParkingPrice> prices = new ArrayList<>();
-        String[] lines = tokenize(data, System.lineSeparator());
+    private final RunMetrics metrics;
+    private final String source;
+    private final ZoneRegistry zoneRegistry;
+
+    public ParkingParser() {
+        this(null);
+    }
+
+    /**
+     * @param metrics records parse time and row counts of every call, or null
+     */
+    public ParkingParser(RunMetrics metrics) {
+        this(metrics, RunMetrics.DEFAULT_SOURCE, ZoneRegistry.DEFAULT);
+    }
+
+    private ParkingParser(RunMetrics metrics, String source, ZoneRegistry zoneRegistry) {
+        this.metrics = metrics;
+        this.source = source;
+        this.zoneRegistry = zoneRegistry;
+    }
+
+    /**
+     * @param source name of the source the rows are from, recorded with the metrics
+     * @return a parser recording into the same metrics
+     */
+    public ParkingParser withSource(String source) {
+        return new ParkingParser(metrics, source, zoneRegistry);
+    }
+
+    /**
+     * @param zoneRegistry assigns the zone ids of the parsed records, the registry of the
+     *                     source the rows are from
+     * @return a parser recording into the same metrics
+     */
+    public ParkingParser withZoneRegistry(ZoneRegistry zoneRegistry) {
+        return new ParkingParser(metrics, source, zoneRegistry);
+    }
+
+    public List<ParkingPrice> parseParkingPrices(List<String[]> rows) {
+        long start = System.nanoTime();
+        List<ParkingPrice> prices = new ArrayList<>(rows.size());
 
         /*
-        * Data format:
+        * Row format (one array element per table cell):
         *
-        * Full info -> I. zona;700101;12,00 kn/h;100,00 kn;2h;
-        * Partial info 1 -> I.1. zona;/;/;150,00 kn;/;
-        * Partial info 2 -> II.3. zona;700108;5,00 kn/h;60,00 kn;nije ograničeno;
+        * Full info -> [I. zona] [700101] [12,00 kn/h] [100,00 kn] [2h]
+        * Partial info 1 -> [I.1. zona] [/] [/] [150,00 kn] [/]
+        * Partial info 2 -> [II.3. zona] [700108] [5,00 kn/h] [60,00 kn] [nije ograničeno]
         * */
 
-        // skip the first line, it is header line
-        ParkingPrice.Builder builder = ParkingPrice.Builder.newBuilder();
-        for (int i = 1; i < lines.length; i++) {
+        // skip the first row, it is header row
+        ParkingPrice.Builder builder = ParkingPrice.Builder.newBuilder().zoneRegistry(zoneRegistry);
+        for (int i = 1; i < rows.size(); i++) {
             // expected token count = 5
-            String[] tokens = tokenize(lines[i], ";");
+            String[] tokens = rows.get(i);
 
             String zone = tokens[0];
             String phone = tokens[1];
 
             double hourlyPrice = 0;
             if (!tokens[2].equals("/")) {
-                String[] hourlyPriceTokens = tokenize(tokens[2], " ");
-                hourlyPrice = Double.parseDouble(hourlyPriceTokens[0].replace(',', '.'));
+                hourlyPrice = CellScanner.parseAmount(tokens[2]);
             }
 
             double dailyPrice = 0;
             if (!tokens[3].equals("/")) {
-                String[] dailyPriceTokens = tokenize(tokens[3], " ");
-                dailyPrice = Double.parseDouble(dailyPriceTokens[0].replace(',', '.'));
+                dailyPrice = CellScanner.parseAmount(tokens[3]);
             }
 
             int maxHours;
@@ -56,10 +95,9 @@ public class ParkingParser {
                 maxHours = 24;
             } else if (tokens[4].startsWith("nije")) {
                 maxHours = Integer.MAX_VALUE;
-            } else if (tokens[4].endsWith("h")){
-                maxHours = Integer.parseInt(tokens[4].replace("h", ""));
             } else {
-                maxHours = 0;
+                // unknown format is stored as 0
+                maxHours = Math.max(CellScanner.parseHours(tokens[4]), 0);
             }
 
             ParkingPrice parkingPrice = builder.zone(zone)
@@ -72,18 +110,18 @@ public class ParkingParser {
             prices.add(parkingPrice);
         }
 
+        record(RunMetrics.DATASET_PRICES, start, rows, prices);
         return prices;
     }
 
-    public List<ParkingTime> parseParkingWorkHours(String data) {
-        String[] lines = tokenize(data, System.lineSeparator());
-
-        List<ParkingTime> workHours = new ArrayList<ParkingTime>();
-        ParkingTime.Builder builder = ParkingTime.Builder.newBuilder();
+    public List<ParkingTime> parseParkingWorkHours(List<String[]> rows) {
+        long start = System.nanoTime();
+        List<ParkingTime> workHours = new ArrayList<ParkingTime>(rows.size());
+        ParkingTime.Builder builder = ParkingTime.Builder.newBuilder().zoneRegistry(zoneRegistry);
 
         // skip first and last index -> first = header, last = garage info (not needed now)
-        for (int i = 1; i < lines.length - 1; i++) {
-            String[] tokens = tokenize(lines[i], ";");
+        for (int i = 1; i < rows.size() - 1; i++) {
+            String[] tokens = rows.get(i);
 
             String zone = tokens[0];
             String workDayInfo = tokens[1];
@@ -109,33 +147,39 @@ public class ParkingParser {
             workHours.add(parkingTime);
         }
 
+        record(RunMetrics.DATASET_WORK_HOURS, start, rows, workHours);
         return workHours;
     }
 
-    public List<ParkingLocation> parseParkingLocations(String data) {
-        String[] lines = tokenize(data, System.lineSeparator());
+    public List<ParkingLocation> parseParkingLocations(List<String[]> rows) {
+        return parseParkingLocations(rows, DEFAULT_CITY);
+    }
 
-        List<ParkingLocation> locations = new ArrayList<ParkingLocation>();
-        for (String line : lines) {
-            String[] tokens = tokenize(line, ";");
+    public List<ParkingLocation> parseParkingLocations(List<String[]> rows, String city) {
+        long start = System.nanoTime();
+        List<ParkingLocation> locations = new ArrayList<ParkingLocation>(rows.size());
+        for (String[] tokens : rows) {
             String zone = tokens[0];
             String address = tokens[1];
-            String city = "Zagreb";
 
             // TODO: Check how to format "address" since some have additional information
 
             ParkingLocation parkingLocation = ParkingLocation.Builder.newBuilder()
                     .zone(zone)
+                    .zoneRegistry(zoneRegistry)
                     .city(city)
                     .address(address)
                     .build();
             locations.add(parkingLocation);
         }
 
+        record(RunMetrics.DATASET_LOCATIONS, start, rows, locations);
         return locations;
     }
 
-    private String[] tokenize(String data, String delimiter) {
-        return data.split(delimiter);
+    private void record(String dataset, long start, List<String[]> rows, List<?> records) {
+        if (metrics != null) {
+            metrics.recordParse(source, dataset, System.nanoTime() - start, rows.size(), records.size());
+        }
     }
 }
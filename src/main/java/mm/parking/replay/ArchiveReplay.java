@@ -0,0 +1,201 @@
+package mm.parking.replay;
+
+import mm.parking.client.TableExtractor;
+import mm.parking.parser.ParkingParser;
+import mm.parking.source.SourceDescriptor;
+import mm.parking.storage.FileStorage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs saved pages through the same extraction, parsing and storage as live downloads.
+ *
+ * Every .html/.htm file under the archive directory whose dataset can be recognized (see
+ * {@link ArchivedPage}) is stored under its path relative to the archive directory, with
+ * directory separators replaced by '_', e.g. 2019/05/prices.html is stored as
+ * 2019_05_prices. Pages are processed on a work stealing pool, a failed page is reported
+ * and does not stop the others. The pages are read as pages of one source, which names
+ * the zona_id of the location pages.
+ */
+public class ArchiveReplay {
+    private final Path archiveDir;
+    private final SourceDescriptor source;
+    private final ParkingParser parser;
+    private final FileStorage storage;
+    private final Set<ArchivedPage.Kind> kinds;
+    private final int parallelism;
+
+    private final AtomicInteger done = new AtomicInteger();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private int total;
+    private int lastPercent;
+
+    public ArchiveReplay(Path archiveDir, ParkingParser parser, FileStorage storage, Set<ArchivedPage.Kind> kinds,
+                         int parallelism) {
+        this(archiveDir, SourceDescriptor.ZAGREB, parser, storage, kinds, parallelism);
+    }
+
+    /**
+     * @param source the source the pages were downloaded from
+     * @param kinds  datasets to replay, pages with other datasets are skipped
+     */
+    public ArchiveReplay(Path archiveDir, SourceDescriptor source, ParkingParser parser, FileStorage storage,
+                         Set<ArchivedPage.Kind> kinds, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+
+        this.archiveDir = archiveDir;
+        this.source = source;
+        this.parser = parser.withZoneRegistry(source.getZoneRegistry());
+        this.storage = storage;
+        this.kinds = kinds;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return one message per page that failed, empty if every page was replayed
+     */
+    public List<String> run() throws IOException {
+        List<ArchivedPage> pages = findPages();
+        total = pages.size();
+        System.out.printf("Replaying %d archived pages from %s ...\n", total, archiveDir);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ReplayTask(pages, 0, pages.size()));
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.printf("Replay finished, %d of %d pages failed.\n", failures.size(), total);
+        return new ArrayList<>(failures);
+    }
+
+    private List<ArchivedPage> findPages() throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(archiveDir)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                        return name.endsWith(".html") || name.endsWith(".htm");
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        List<ArchivedPage> pages = new ArrayList<>(files.size());
+        for (Path file : files) {
+            ArchivedPage page = ArchivedPage.of(file);
+            if (page == null) {
+                System.out.println("Skipping unrecognized page: " + file);
+            } else if (kinds.contains(page.getKind())) {
+                pages.add(page);
+            }
+        }
+        return pages;
+    }
+
+    private void replay(ArchivedPage page) throws IOException {
+        String filename = outputName(page.getPath());
+
+        List<String[]> rows;
+        // charset is taken from the page itself
+        try (Reader reader = TableExtractor.newReader(Files.newInputStream(page.getPath()), null)) {
+            if (page.getKind() == ArchivedPage.Kind.LOCATIONS) {
+                String zone = source.getZones().get(page.getZoneId());
+                if (zone == null) {
+                    throw new IOException("Unknown zona_id " + page.getZoneId() + " for source " + source.getName());
+                }
+                rows = TableExtractor.extractLocations(reader, zone, source.getLocationsTableClass());
+            } else {
+                rows = TableExtractor.extractTable(reader, source.getTableClass());
+            }
+        }
+
+        switch (page.getKind()) {
+            case PRICES:
+                storage.storePrices(parser.parseParkingPrices(rows), filename);
+                break;
+            case WORK_HOURS:
+                storage.storeWorkHours(parser.parseParkingWorkHours(rows), filename);
+                break;
+            case LOCATIONS:
+                storage.storeLocations(parser.parseParkingLocations(rows, source.getCity()), filename);
+                break;
+        }
+    }
+
+    private String outputName(Path file) {
+        String relative = archiveDir.relativize(file).toString();
+        int dot = relative.lastIndexOf('.');
+        return relative.substring(0, dot).replace(file.getFileSystem().getSeparator(), "_");
+    }
+
+    private void pageDone(ArchivedPage page, Exception error) {
+        if (error != null) {
+            failures.add(page.getPath() + ": " + error.getMessage());
+            System.out.println("Failed to replay " + page.getPath() + ": " + error.getMessage());
+        }
+
+        int count = done.incrementAndGet();
+        int percent = count * 100 / total;
+        synchronized (this) {
+            if (percent > lastPercent || count == total) {
+                lastPercent = percent;
+                System.out.printf("Replayed %d/%d pages (%d%%)\n", count, total, percent);
+            }
+        }
+    }
+
+    /**
+     * Splits the page list in halves until single pages remain, idle workers steal the
+     * other halves.
+     */
+    private class ReplayTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ArchivedPage> pages;
+        private final int from;
+        private final int to;
+
+        ReplayTask(List<ArchivedPage> pages, int from, int to) {
+            this.pages = pages;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                ArchivedPage page = pages.get(from);
+                try {
+                    replay(page);
+                    pageDone(page, null);
+                } catch (IOException | RuntimeException e) {
+                    pageDone(page, e);
+                }
+                return;
+            }
+            if (to <= from) {
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ReplayTask(pages, from, middle), new ReplayTask(pages, middle, to));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package mm.parking.replay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A saved zagrebparking.hr page and the dataset it contains.
+ *
+ * The dataset is recognized from the page URL when the page was saved by HttpCache (the
+ * URL is kept in the .properties file next to it), otherwise from the file name. Names
+ * may contain the original query ("default.aspx?id=55", "zona_id=3") or the dataset
+ * ("prices", "work_hours", "locations-3").
+ */
+public final class ArchivedPage {
+    public enum Kind {
+        PRICES, WORK_HOURS, LOCATIONS
+    }
+
+    private static final Pattern PRICES_ID = Pattern.compile("[?&_]id=55(?!\\d)");
+    private static final Pattern WORK_HOURS_ID = Pattern.compile("[?&_]id=1461(?!\\d)");
+    private static final Pattern ZONE_ID = Pattern.compile("zona_id=(\\d+)");
+    private static final Pattern LOCATIONS_NAME = Pattern.compile("locations?\\D*(\\d+)");
+
+    private final Path path;
+    private final String url;
+    private final Kind kind;
+    private final int zoneId;
+
+    private ArchivedPage(Path path, String url, Kind kind, int zoneId) {
+        this.path = path;
+        this.url = url;
+        this.kind = kind;
+        this.zoneId = zoneId;
+    }
+
+    /**
+     * @return the page, or null if the dataset can not be recognized
+     */
+    public static ArchivedPage of(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+
+        String url = null;
+        Path metaPath = file.resolveSibling(baseName + ".properties");
+        if (Files.isRegularFile(metaPath)) {
+            Properties meta = new Properties();
+            try (InputStream in = Files.newInputStream(metaPath)) {
+                meta.load(in);
+            }
+            url = meta.getProperty("url");
+        }
+
+        ArchivedPage page = url != null ? classify(file, url, url) : null;
+        if (page == null) {
+            page = classify(file, url, fileName.toLowerCase(Locale.ROOT));
+        }
+        return page;
+    }
+
+    private static ArchivedPage classify(Path file, String url, String value) {
+        Matcher zone = ZONE_ID.matcher(value);
+        if (zone.find()) {
+            return new ArchivedPage(file, url, Kind.LOCATIONS, Integer.parseInt(zone.group(1)));
+        }
+        if (PRICES_ID.matcher(value).find()) {
+            return new ArchivedPage(file, url, Kind.PRICES, 0);
+        }
+        if (WORK_HOURS_ID.matcher(value).find()) {
+            return new ArchivedPage(file, url, Kind.WORK_HOURS, 0);
+        }
+
+        Matcher locations = LOCATIONS_NAME.matcher(value);
+        if (locations.find()) {
+            return new ArchivedPage(file, url, Kind.LOCATIONS, Integer.parseInt(locations.group(1)));
+        }
+        if (value.contains("price")) {
+            return new ArchivedPage(file, url, Kind.PRICES, 0);
+        }
+        if (value.contains("work_hours") || value.contains("workhours")) {
+            return new ArchivedPage(file, url, Kind.WORK_HOURS, 0);
+        }
+        return null;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return original URL of the page, null if unknown
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return zona_id of a location page, 0 for other pages
+     */
+    public int getZoneId() {
+        return zoneId;
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + kind + (kind == Kind.LOCATIONS ? " " + zoneId : "") + ")";
+    }
+}
@@ -0,0 +1,119 @@
+package mm.parking.schedule;
+
+import mm.parking.ParkingTime;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers whether a zone is charging at a given instant.
+ *
+ * Schedules are indexed by canonical zone id and the UTC offsets of the time zone are
+ * precomputed, so a query does a binary search over offset transitions and a bit test
+ * without allocating. The batch methods are meant for large arrays of (zone, timestamp)
+ * pairs.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class ChargingEvaluator {
+    public static final ZoneId DEFAULT_TIME_ZONE = ZoneId.of("Europe/Zagreb");
+
+    private final WeeklySchedule[] schedules;
+    private final int[] holidays;
+    private final ZoneOffsets offsets;
+
+    private ChargingEvaluator(WeeklySchedule[] schedules, int[] holidays, ZoneId timeZone) {
+        this.schedules = schedules;
+        this.holidays = holidays;
+        this.offsets = new ZoneOffsets(timeZone);
+    }
+
+    public static ChargingEvaluator of(List<ParkingTime> workHours) {
+        return of(workHours, DEFAULT_TIME_ZONE, new int[0]);
+    }
+
+    /**
+     * @param holidays public holidays as epoch days (days since 1970-01-01), charged with
+     *                 the Sunday and holiday hours
+     */
+    public static ChargingEvaluator of(List<ParkingTime> workHours, ZoneId timeZone, int[] holidays) {
+        int maxZoneId = 0;
+        for (ParkingTime time : workHours) {
+            maxZoneId = Math.max(maxZoneId, time.getZoneId());
+        }
+
+        WeeklySchedule[] schedules = new WeeklySchedule[maxZoneId + 1];
+        for (ParkingTime time : workHours) {
+            schedules[time.getZoneId()] = time.getSchedule();
+        }
+
+        int[] sortedHolidays = holidays.clone();
+        Arrays.sort(sortedHolidays);
+        return new ChargingEvaluator(schedules, sortedHolidays, timeZone);
+    }
+
+    /**
+     * @param zoneId canonical zone id, unknown zones are never charging
+     */
+    public boolean isCharging(int zoneId, long epochMillis) {
+        if (zoneId < 0 || zoneId >= schedules.length) {
+            return false;
+        }
+        WeeklySchedule schedule = schedules[zoneId];
+        if (schedule == null) {
+            return false;
+        }
+
+        long local = offsets.toLocalSecond(Math.floorDiv(epochMillis, 1000L));
+        long epochDay = Math.floorDiv(local, ZoneOffsets.SECONDS_PER_DAY);
+        int minuteOfDay = Math.floorMod(local, ZoneOffsets.SECONDS_PER_DAY) / 60;
+
+        if (isHoliday(epochDay)) {
+            return schedule.isChargingOnHoliday(minuteOfDay);
+        }
+
+        int dayOfWeek = ZoneOffsets.dayOfWeek(epochDay);
+        return schedule.isCharging(dayOfWeek * WeeklySchedule.MINUTES_PER_DAY + minuteOfDay);
+    }
+
+    /**
+     * Evaluates {@code count} pairs starting at {@code offset} and writes the results into
+     * {@code result} at the same positions.
+     */
+    public void isCharging(int[] zoneIds, long[] epochMillis, boolean[] result, int offset, int count) {
+        for (int i = offset, end = offset + count; i < end; i++) {
+            result[i] = isCharging(zoneIds[i], epochMillis[i]);
+        }
+    }
+
+    public void isCharging(int[] zoneIds, long[] epochMillis, boolean[] result) {
+        isCharging(zoneIds, epochMillis, result, 0, zoneIds.length);
+    }
+
+    /**
+     * @return number of pairs that fall into a charging period
+     */
+    public int countCharging(int[] zoneIds, long[] epochMillis, int offset, int count) {
+        int charging = 0;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            if (isCharging(zoneIds[i], epochMillis[i])) {
+                charging++;
+            }
+        }
+        return charging;
+    }
+
+    boolean isHoliday(long epochDay) {
+        return holidays.length > 0 && epochDay >= Integer.MIN_VALUE && epochDay <= Integer.MAX_VALUE
+                && Arrays.binarySearch(holidays, (int) epochDay) >= 0;
+    }
+
+    ZoneOffsets getOffsets() {
+        return offsets;
+    }
+
+    WeeklySchedule getSchedule(int zoneId) {
+        return zoneId >= 0 && zoneId < schedules.length ? schedules[zoneId] : null;
+    }
+}
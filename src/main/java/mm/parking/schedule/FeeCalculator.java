@@ -0,0 +1,253 @@
+package mm.parking.schedule;
+
+import mm.parking.ParkingPrice;
+import mm.parking.ZoneRegistry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Computes parking fees for sessions given as (zone, start, end).
+ *
+ * Only minutes inside the charging periods of the zone are paid. The charged minutes of
+ * each local day are billed per started billing unit (an hour by default) at the hourly
+ * price and capped at the daily price. Zones without an hourly price (daily ticket only)
+ * pay the daily price for every day with charged minutes. A session that has more charged
+ * minutes in one day than the max hours of the zone allow is reported as exceeding the
+ * limit, its fee is still computed the same way.
+ *
+ * Days are walked in local time, so the hour skipped when clocks move forward is never
+ * charged and the repeated hour when they move back is charged once.
+ *
+ * Instances are immutable, the batch methods split the sessions across the common
+ * fork join pool.
+ */
+public final class FeeCalculator {
+    public static final int DEFAULT_BILLING_MINUTES = 60;
+
+    // sessions per parallel chunk, small batches are computed on the calling thread
+    private static final int CHUNK_SIZE = 16 * 1024;
+    // rows read from a stream before they are priced as one batch
+    private static final int STREAM_BATCH_SIZE = 256 * 1024;
+
+    private final ChargingEvaluator charging;
+    private final ParkingPrice[] prices;
+    private final int billingMinutes;
+    private final ZoneRegistry zoneRegistry;
+
+    private FeeCalculator(ChargingEvaluator charging, ParkingPrice[] prices, int billingMinutes,
+                          ZoneRegistry zoneRegistry) {
+        this.charging = charging;
+        this.prices = prices;
+        this.billingMinutes = billingMinutes;
+        this.zoneRegistry = zoneRegistry;
+    }
+
+    public static FeeCalculator of(List<ParkingPrice> prices, ChargingEvaluator charging) {
+        return of(prices, charging, DEFAULT_BILLING_MINUTES);
+    }
+
+    /**
+     * @param billingMinutes length of the smallest paid unit in minutes
+     */
+    public static FeeCalculator of(List<ParkingPrice> prices, ChargingEvaluator charging, int billingMinutes) {
+        return of(prices, charging, billingMinutes, ZoneRegistry.DEFAULT);
+    }
+
+    /**
+     * @param billingMinutes length of the smallest paid unit in minutes
+     * @param zoneRegistry registry the zone ids of prices come from, resolves the zone names
+     *                     of {@link #computeFees(BufferedReader, Writer)}
+     */
+    public static FeeCalculator of(List<ParkingPrice> prices, ChargingEvaluator charging, int billingMinutes,
+                                   ZoneRegistry zoneRegistry) {
+        if (billingMinutes <= 0) {
+            throw new IllegalArgumentException("Billing unit must be positive: " + billingMinutes);
+        }
+
+        int maxZoneId = 0;
+        for (ParkingPrice price : prices) {
+            maxZoneId = Math.max(maxZoneId, price.getZoneId());
+        }
+
+        ParkingPrice[] byZone = new ParkingPrice[maxZoneId + 1];
+        for (ParkingPrice price : prices) {
+            byZone[price.getZoneId()] = price;
+        }
+
+        return new FeeCalculator(charging, byZone, billingMinutes, zoneRegistry);
+    }
+
+    /**
+     * @return fee for one session, 0 for zones without a price or charging periods
+     */
+    public double computeFee(int zoneId, long startMillis, long endMillis) {
+        return compute(zoneId, startMillis, endMillis, null, 0);
+    }
+
+    /**
+     * Computes fees for {@code count} sessions starting at {@code offset}, results are
+     * written at the same positions.
+     *
+     * @param exceedsMaxHours receives whether a session is longer than the zone allows, may
+     *                        be null
+     */
+    public void computeFees(int[] zoneIds, long[] startMillis, long[] endMillis, double[] fees,
+                            boolean[] exceedsMaxHours, int offset, int count) {
+        if (count <= CHUNK_SIZE) {
+            computeRange(zoneIds, startMillis, endMillis, fees, exceedsMaxHours, offset, offset + count);
+            return;
+        }
+
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = offset + chunk * CHUNK_SIZE;
+            int to = Math.min(from + CHUNK_SIZE, offset + count);
+            computeRange(zoneIds, startMillis, endMillis, fees, exceedsMaxHours, from, to);
+        });
+    }
+
+    public void computeFees(int[] zoneIds, long[] startMillis, long[] endMillis, double[] fees) {
+        computeFees(zoneIds, startMillis, endMillis, fees, null, 0, zoneIds.length);
+    }
+
+    /**
+     * Prices a session log line by line. Each input line is {@code zone,startMillis,endMillis}
+     * where zone is a canonical zone id or a zone name as written on the pages. For each
+     * session one line {@code fee} or {@code fee,exceeded} (when the session exceeds the
+     * max hours) is written. Empty lines are skipped, a zone name unknown to the zone
+     * registry fails the whole log.
+     *
+     * @return number of priced sessions
+     */
+    public long computeFees(BufferedReader in, Writer out) throws IOException {
+        int[] zoneIds = new int[STREAM_BATCH_SIZE];
+        long[] starts = new long[STREAM_BATCH_SIZE];
+        long[] ends = new long[STREAM_BATCH_SIZE];
+        double[] fees = new double[STREAM_BATCH_SIZE];
+        boolean[] exceeded = new boolean[STREAM_BATCH_SIZE];
+
+        long total = 0;
+        long lineNumber = 0;
+        int size = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            String[] columns = line.split(",");
+            if (columns.length != 3) {
+                throw new IOException("Invalid session at line " + lineNumber + ": " + line);
+            }
+            try {
+                zoneIds[size] = parseZone(columns[0].trim());
+                if (zoneIds[size] == ZoneRegistry.NO_ZONE) {
+                    throw new IOException("Unknown zone at line " + lineNumber + ": " + line);
+                }
+                starts[size] = Long.parseLong(columns[1].trim());
+                ends[size] = Long.parseLong(columns[2].trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid session at line " + lineNumber + ": " + line, e);
+            }
+
+            if (++size == STREAM_BATCH_SIZE) {
+                write(out, zoneIds, starts, ends, fees, exceeded, size);
+                total += size;
+                size = 0;
+            }
+        }
+
+        write(out, zoneIds, starts, ends, fees, exceeded, size);
+        out.flush();
+        return total + size;
+    }
+
+    private void write(Writer out, int[] zoneIds, long[] starts, long[] ends, double[] fees,
+                       boolean[] exceeded, int size) throws IOException {
+        computeFees(zoneIds, starts, ends, fees, exceeded, 0, size);
+        for (int i = 0; i < size; i++) {
+            out.write(Double.toString(fees[i]));
+            if (exceeded[i]) {
+                out.write(",exceeded");
+            }
+            out.write('\n');
+        }
+    }
+
+    private int parseZone(String zone) {
+        if (!zone.isEmpty() && Character.isDigit(zone.charAt(0))) {
+            return Integer.parseInt(zone);
+        }
+        return zoneRegistry.find(zone);
+    }
+
+    private void computeRange(int[] zoneIds, long[] startMillis, long[] endMillis, double[] fees,
+                              boolean[] exceedsMaxHours, int from, int to) {
+        for (int i = from; i < to; i++) {
+            fees[i] = compute(zoneIds[i], startMillis[i], endMillis[i], exceedsMaxHours, i);
+        }
+    }
+
+    private double compute(int zoneId, long startMillis, long endMillis, boolean[] exceedsMaxHours, int index) {
+        ParkingPrice price = zoneId >= 0 && zoneId < prices.length ? prices[zoneId] : null;
+        WeeklySchedule schedule = charging.getSchedule(zoneId);
+        if (exceedsMaxHours != null) {
+            exceedsMaxHours[index] = false;
+        }
+        if (price == null || schedule == null || endMillis <= startMillis) {
+            return 0;
+        }
+
+        ZoneOffsets offsets = charging.getOffsets();
+        long startMinute = Math.floorDiv(offsets.toLocalSecond(Math.floorDiv(startMillis, 1000L)), 60);
+        long endMinute = Math.floorDiv(offsets.toLocalSecond(Math.floorDiv(endMillis + 999, 1000L)) + 59, 60);
+
+        int maxHours = price.getMaxHours();
+        long maxMinutes = maxHours <= 0 || maxHours == Integer.MAX_VALUE ? Long.MAX_VALUE : maxHours * 60L;
+
+        double fee = 0;
+        long day = Math.floorDiv(startMinute, WeeklySchedule.MINUTES_PER_DAY);
+        long dayStart = day * WeeklySchedule.MINUTES_PER_DAY;
+        while (dayStart < endMinute) {
+            int from = (int) (Math.max(startMinute, dayStart) - dayStart);
+            int to = (int) (Math.min(endMinute, dayStart + WeeklySchedule.MINUTES_PER_DAY) - dayStart);
+
+            int charged;
+            if (charging.isHoliday(day)) {
+                charged = schedule.chargedHolidayMinutes(from, to);
+            } else {
+                int weekOffset = ZoneOffsets.dayOfWeek(day) * WeeklySchedule.MINUTES_PER_DAY;
+                charged = schedule.chargedMinutes(weekOffset + from, weekOffset + to);
+            }
+
+            if (charged > 0) {
+                fee += dayFee(price, charged);
+                if (charged > maxMinutes && exceedsMaxHours != null) {
+                    exceedsMaxHours[index] = true;
+                }
+            }
+
+            day++;
+            dayStart += WeeklySchedule.MINUTES_PER_DAY;
+        }
+
+        return fee;
+    }
+
+    private double dayFee(ParkingPrice price, int chargedMinutes) {
+        double hourly = price.getHourlyPrice();
+        double daily = price.getDailyPrice();
+        if (hourly <= 0) {
+            return daily;
+        }
+
+        int units = (chargedMinutes + billingMinutes - 1) / billingMinutes;
+        double fee = units * billingMinutes * hourly / 60;
+        return daily > 0 ? Math.min(fee, daily) : fee;
+    }
+}
@@ -0,0 +1,189 @@
+package mm.parking.schedule;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Charging periods of one zone as a set of minutes of the week.
+ *
+ * Minutes are stored in a bitset: index 0 is Monday 00:00, index 10079 is Sunday 23:59 and
+ * the following 1440 bits hold the hours used on public holidays. A lookup is a single bit
+ * test, a schedule takes a bit over 1 KB.
+ */
+public final class WeeklySchedule {
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    static final int HOLIDAY_OFFSET = MINUTES_PER_WEEK;
+
+    private static final int BIT_COUNT = MINUTES_PER_WEEK + MINUTES_PER_DAY;
+
+    // "07:00 - 21:00", "7,00-16,00", "8 - 15 h", "7.30 – 20.00"
+    private static final Pattern RANGE = Pattern.compile(
+            "(\\d{1,2})(?:[:.,](\\d{2}))?\\s*(?:h\\s*)?[-\u2013\u2014]\\s*(\\d{1,2})(?:[:.,](\\d{2}))?");
+
+    public static final WeeklySchedule FREE = new WeeklySchedule(new long[(BIT_COUNT + 63) >>> 6]);
+
+    // the same few work hours repeat across zones and snapshots
+    private static final int CACHE_LIMIT = 1024;
+    private static final ConcurrentMap<String, WeeklySchedule> cache = new ConcurrentHashMap<>();
+
+    private final long[] bits;
+
+    private WeeklySchedule(long[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Builds a schedule from the work hours cells. Working day hours apply from Monday to
+     * Friday, Sunday hours are also used for holidays. Cells without a recognizable time
+     * range (e.g. "free") have no charging.
+     */
+    public static WeeklySchedule parse(String workDayHours, String saturdayHours, String sundayHolidayHours) {
+        String key = workDayHours + '\n' + saturdayHours + '\n' + sundayHolidayHours;
+        WeeklySchedule schedule = cache.get(key);
+        if (schedule == null) {
+            schedule = create(workDayHours, saturdayHours, sundayHolidayHours);
+            if (cache.size() < CACHE_LIMIT) {
+                cache.putIfAbsent(key, schedule);
+            }
+        }
+        return schedule;
+    }
+
+    private static WeeklySchedule create(String workDayHours, String saturdayHours, String sundayHolidayHours) {
+        long[] bits = new long[(BIT_COUNT + 63) >>> 6];
+        for (int day = 0; day < 5; day++) {
+            addRanges(bits, day * MINUTES_PER_DAY, workDayHours);
+        }
+        addRanges(bits, 5 * MINUTES_PER_DAY, saturdayHours);
+        addRanges(bits, 6 * MINUTES_PER_DAY, sundayHolidayHours);
+        addRanges(bits, HOLIDAY_OFFSET, sundayHolidayHours);
+
+        for (long word : bits) {
+            if (word != 0) {
+                return new WeeklySchedule(bits);
+            }
+        }
+        return FREE;
+    }
+
+    /**
+     * @param minuteOfWeek minute since Monday 00:00, 0 - 10079
+     */
+    public boolean isCharging(int minuteOfWeek) {
+        return (bits[minuteOfWeek >>> 6] & (1L << minuteOfWeek)) != 0;
+    }
+
+    /**
+     * @param minuteOfDay minute since midnight on a public holiday, 0 - 1439
+     */
+    public boolean isChargingOnHoliday(int minuteOfDay) {
+        int index = HOLIDAY_OFFSET + minuteOfDay;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return number of charged minutes in a week without holidays
+     */
+    public int chargedMinutesPerWeek() {
+        return count(0, MINUTES_PER_WEEK);
+    }
+
+    /**
+     * @return number of charged minutes in [fromMinute, toMinute) of the week, the range
+     * must not wrap over Sunday midnight
+     */
+    public int chargedMinutes(int fromMinute, int toMinute) {
+        return count(fromMinute, toMinute);
+    }
+
+    /**
+     * @return number of charged minutes in [fromMinute, toMinute) of a public holiday
+     */
+    public int chargedHolidayMinutes(int fromMinute, int toMinute) {
+        return count(HOLIDAY_OFFSET + fromMinute, HOLIDAY_OFFSET + toMinute);
+    }
+
+    // counts set bits in [from, to)
+    private int count(int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if (first == last) {
+            return Long.bitCount(bits[first] & firstMask & lastMask);
+        }
+
+        int count = Long.bitCount(bits[first] & firstMask);
+        for (int i = first + 1; i < last; i++) {
+            count += Long.bitCount(bits[i]);
+        }
+        return count + Long.bitCount(bits[last] & lastMask);
+    }
+
+    public boolean isFree() {
+        return this == FREE;
+    }
+
+    private static void addRanges(long[] bits, int dayOffset, String cell) {
+        if (cell == null) {
+            return;
+        }
+
+        Matcher matcher = RANGE.matcher(cell);
+        while (matcher.find()) {
+            int from = toMinute(matcher.group(1), matcher.group(2));
+            int to = toMinute(matcher.group(3), matcher.group(4));
+            if (from < 0 || to < 0) {
+                continue;
+            }
+
+            if (to > from) {
+                set(bits, dayOffset + from, dayOffset + to);
+            } else if (to < from) {
+                // over midnight, the rest of the range belongs to the next day of the week
+                set(bits, dayOffset + from, dayOffset + MINUTES_PER_DAY);
+                if (dayOffset < HOLIDAY_OFFSET) {
+                    int next = (dayOffset + MINUTES_PER_DAY) % MINUTES_PER_WEEK;
+                    set(bits, next, next + to);
+                }
+            }
+        }
+    }
+
+    private static int toMinute(String hours, String minutes) {
+        int hour = Integer.parseInt(hours);
+        int minute = minutes == null ? 0 : Integer.parseInt(minutes);
+        if (hour > 24 || minute > 59 || (hour == 24 && minute > 0)) {
+            return -1;
+        }
+        return hour * 60 + minute;
+    }
+
+    // sets bits [from, to)
+    private static void set(long[] bits, int from, int to) {
+        for (int i = from; i < to; i++) {
+            bits[i >>> 6] |= 1L << i;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(bits, ((WeeklySchedule) o).bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bits);
+    }
+}
@@ -0,0 +1,75 @@
+package mm.parking.schedule;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * UTC offsets of a time zone precomputed into arrays, so that converting an instant to
+ * local time is a binary search over the offset transitions without allocating.
+ */
+final class ZoneOffsets {
+    static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    // offsets are precomputed up to 2100-01-01
+    private static final long TRANSITIONS_END = 4102444800L;
+
+    private final long[] transitions;
+    private final int[] offsets;
+
+    ZoneOffsets(ZoneId timeZone) {
+        ZoneRules rules = timeZone.getRules();
+        long[] transitions = new long[16];
+        int[] offsets = new int[17];
+        int count = 0;
+
+        offsets[0] = rules.getOffset(Instant.EPOCH).getTotalSeconds();
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.EPOCH);
+        while (transition != null && transition.toEpochSecond() < TRANSITIONS_END) {
+            if (count == transitions.length) {
+                transitions = Arrays.copyOf(transitions, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2 + 1);
+            }
+            transitions[count] = transition.toEpochSecond();
+            offsets[++count] = transition.getOffsetAfter().getTotalSeconds();
+            transition = rules.nextTransition(transition.getInstant());
+        }
+
+        this.transitions = Arrays.copyOf(transitions, count);
+        this.offsets = Arrays.copyOf(offsets, count + 1);
+    }
+
+    /**
+     * @return local time in seconds since 1970-01-01T00:00 local
+     */
+    long toLocalSecond(long epochSecond) {
+        return epochSecond + offsetAt(epochSecond);
+    }
+
+    /**
+     * @return UTC offset in seconds in effect at the given epoch second
+     */
+    int offsetAt(long epochSecond) {
+        int low = 0;
+        int high = transitions.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (transitions[mid] <= epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return offsets[low];
+    }
+
+    /**
+     * @return day of the week of a local epoch day, 0 = Monday
+     */
+    static int dayOfWeek(long epochDay) {
+        // 1970-01-01 was a Thursday
+        return Math.floorMod(epochDay + 3, 7);
+    }
+}
@@ -0,0 +1,217 @@
+package mm.parking.server;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import mm.parking.index.AddressIndex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Local HTTP endpoint for the parsed data.
+ *
+ * <pre>
+ * GET /prices.json, /prices.xml, /prices.txt         (also work_hours.* and locations.*)
+ * GET /zone?address=Ilica 1                          zones of an address
+ * GET /complete?prefix=Ili&amp;limit=10                  address completion
+ * </pre>
+ *
+ * Dataset bodies come pre-encoded from the {@link ResponseCache}.
+ */
+public class QueryServer {
+    private static final int DEFAULT_COMPLETE_LIMIT = 10;
+    private static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
+
+    private final HttpServer server;
+    private final ResponseCache responses;
+    private final Supplier<AddressIndex> addressIndex;
+
+    public QueryServer(int port, Executor executor, ResponseCache responses,
+                       Supplier<AddressIndex> addressIndex) throws IOException {
+        this.responses = responses;
+        this.addressIndex = addressIndex;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handleDataset);
+        this.server.createContext("/zone", this::handleZone);
+        this.server.createContext("/complete", this::handleComplete);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleDataset(HttpExchange exchange) throws IOException {
+        try {
+            if (!isReadRequest(exchange)) {
+                return;
+            }
+
+            String name = exchange.getRequestURI().getPath().substring(1);
+            ResponseCache.Body body = responses.get(name);
+            if (body == null) {
+                sendError(exchange, 404, "Unknown dataset: " + name);
+                return;
+            }
+
+            byte[] data = body.getData();
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (body.getGzipData() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                data = body.getGzipData();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Type", body.getContentType());
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            send(exchange, 200, data);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleZone(HttpExchange exchange) throws IOException {
+        if (!isContextPath(exchange)) {
+            handleDataset(exchange);
+            return;
+        }
+
+        try {
+            if (!isReadRequest(exchange)) {
+                return;
+            }
+
+            AddressIndex index = addressIndex.get();
+            String address = queryParameter(exchange, "address");
+            if (index == null) {
+                sendError(exchange, 503, "Locations not loaded yet");
+                return;
+            }
+            if (address == null) {
+                sendError(exchange, 400, "Missing address parameter");
+                return;
+            }
+
+            sendJson(exchange, index.findZones(address));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleComplete(HttpExchange exchange) throws IOException {
+        if (!isContextPath(exchange)) {
+            handleDataset(exchange);
+            return;
+        }
+
+        try {
+            if (!isReadRequest(exchange)) {
+                return;
+            }
+
+            AddressIndex index = addressIndex.get();
+            String prefix = queryParameter(exchange, "prefix");
+            if (index == null) {
+                sendError(exchange, 503, "Locations not loaded yet");
+                return;
+            }
+            if (prefix == null) {
+                sendError(exchange, 400, "Missing prefix parameter");
+                return;
+            }
+
+            int limit = DEFAULT_COMPLETE_LIMIT;
+            String limitParameter = queryParameter(exchange, "limit");
+            if (limitParameter != null) {
+                try {
+                    limit = Integer.parseInt(limitParameter);
+                } catch (NumberFormatException e) {
+                    sendError(exchange, 400, "Not a number: " + limitParameter);
+                    return;
+                }
+            }
+
+            sendJson(exchange, index.complete(prefix, limit));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Contexts match by prefix, e.g. "/zonex" reaches the "/zone" handler.
+     */
+    private static boolean isContextPath(HttpExchange exchange) {
+        return exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath());
+    }
+
+    private boolean isReadRequest(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET") || method.equals("HEAD")) {
+            return true;
+        }
+
+        exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+        sendError(exchange, 405, "Method not allowed: " + method);
+        return false;
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+                return URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void sendJson(HttpExchange exchange, List<String> values) throws IOException {
+        StringWriter sw = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(sw)) {
+            writer.beginArray();
+            for (String value : values) {
+                writer.value(value);
+            }
+            writer.endArray();
+        }
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE_JSON);
+        send(exchange, 200, sw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(exchange, status, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] data) throws IOException {
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(data.length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, data.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data);
+        }
+    }
+}
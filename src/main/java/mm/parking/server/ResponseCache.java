@@ -0,0 +1,167 @@
+package mm.parking.server;
+
+import mm.parking.ParkingLocation;
+import mm.parking.ParkingPrice;
+import mm.parking.ParkingTime;
+import mm.parking.storage.FileStorage;
+import mm.parking.storage.JsonStorage;
+import mm.parking.storage.TextStorage;
+import mm.parking.storage.XmlStorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoded response bodies for every dataset and format. Bodies are encoded with the
+ * regular storage back-ends once per data refresh and kept as byte arrays, together
+ * with a gzipped copy, so serving a request does no serialization at all. A body is only
+ * replaced once its back-end finished without error, a failed update keeps serving the
+ * last good body.
+ */
+public class ResponseCache {
+    public static final String DATASET_PRICES = "prices";
+    public static final String DATASET_WORK_HOURS = "work_hours";
+    public static final String DATASET_LOCATIONS = "locations";
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            ".json", "application/json; charset=utf-8",
+            ".xml", "application/xml; charset=utf-8",
+            ".txt", "text/plain; charset=utf-8"
+    );
+
+    private final Map<String, Body> bodies = new ConcurrentHashMap<>();
+    // streams of the back-ends currently writing, by body name
+    private final Map<String, BodyStream> writing = new ConcurrentHashMap<>();
+
+    private final FileStorage xmlStorage = new XmlStorage("") {
+        @Override
+        protected OutputStream newOutputStream(String filename) {
+            return open(filename);
+        }
+    };
+    private final FileStorage jsonStorage = new JsonStorage("", JsonStorage.newGson(true)) {
+        @Override
+        protected OutputStream newOutputStream(String filename) {
+            return open(filename);
+        }
+    };
+    private final FileStorage textStorage = new TextStorage("") {
+        @Override
+        protected OutputStream newOutputStream(String filename) {
+            return open(filename);
+        }
+    };
+
+    public void updatePrices(List<ParkingPrice> prices) throws IOException {
+        update(DATASET_PRICES, (storage, name) -> storage.storePrices(prices, name));
+    }
+
+    public void updateWorkHours(List<ParkingTime> workHours) throws IOException {
+        update(DATASET_WORK_HOURS, (storage, name) -> storage.storeWorkHours(workHours, name));
+    }
+
+    public void updateLocations(List<ParkingLocation> locations) throws IOException {
+        update(DATASET_LOCATIONS, (storage, name) -> storage.storeLocations(locations, name));
+    }
+
+    private void update(String dataset, StoreTask task) throws IOException {
+        store(xmlStorage, dataset + ".xml", task);
+        store(jsonStorage, dataset + ".json", task);
+        store(textStorage, dataset + ".txt", task);
+    }
+
+    private void store(FileStorage storage, String name, StoreTask task) throws IOException {
+        try {
+            task.store(storage, name);
+        } catch (IOException | RuntimeException e) {
+            // the partly written body is dropped
+            writing.remove(name);
+            throw e;
+        }
+        BodyStream stream = writing.remove(name);
+        if (stream == null) {
+            throw new IOException("No body written for " + name);
+        }
+        stream.commit();
+    }
+
+    private BodyStream open(String name) {
+        BodyStream stream = new BodyStream(name);
+        writing.put(name, stream);
+        return stream;
+    }
+
+    /**
+     * @param name dataset name with format extension, e.g. "prices.json"
+     * @return the encoded body or null if the dataset has not been loaded yet
+     */
+    public Body get(String name) {
+        return bodies.get(name);
+    }
+
+    public boolean contains(String dataset) {
+        return bodies.containsKey(dataset + ".json");
+    }
+
+    public static final class Body {
+        private final byte[] data;
+        private final byte[] gzipData;
+        private final String contentType;
+
+        private Body(byte[] data, byte[] gzipData, String contentType) {
+            this.data = data;
+            this.gzipData = gzipData;
+            this.contentType = contentType;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * @return gzipped data, or null if compression does not make the body smaller
+         */
+        public byte[] getGzipData() {
+            return gzipData;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private interface StoreTask {
+        void store(FileStorage storage, String name) throws IOException;
+    }
+
+    /**
+     * Collects everything a storage back-end writes. Closing publishes nothing, the body
+     * is published by {@link #commit()} once the back-end returned without error.
+     */
+    private final class BodyStream extends ByteArrayOutputStream {
+        private final String name;
+
+        private BodyStream(String name) {
+            super(8 * 1024);
+            this.name = name;
+        }
+
+        void commit() throws IOException {
+            byte[] data = toByteArray();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(data);
+            }
+            byte[] gzipData = compressed.size() < data.length ? compressed.toByteArray() : null;
+
+            String extension = name.substring(name.lastIndexOf('.'));
+            bodies.put(name, new Body(data, gzipData, CONTENT_TYPES.get(extension)));
+        }
+    }
+}
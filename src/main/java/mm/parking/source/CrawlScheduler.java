@@ -0,0 +1,175 @@
+package mm.parking.source;
+
+import mm.parking.ParkingLocation;
+import mm.parking.ParkingPrice;
+import mm.parking.ParkingTime;
+import mm.parking.client.HttpCache;
+import mm.parking.client.ParkingClient;
+import mm.parking.client.RateLimitedTransport;
+import mm.parking.client.Transport;
+import mm.parking.parser.ParkingParser;
+import mm.parking.storage.MultiFormatStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Crawls several sources concurrently in one process.
+ *
+ * All sources share one transport, and with it the open connections, and parse and
+ * store on one executor. Each source sends its requests through its own
+ * {@link RateLimitedTransport}, so a slow source only uses up its own concurrency budget
+ * and request rate. Zone ids come from the source's own
+ * {@link SourceDescriptor#getZoneRegistry() registry}, so equal zone names of different
+ * sources do not share an id. The datasets of a source are stored as [source]_prices,
+ * [source]_work_hours and [source]_locations, their parse and store metrics are recorded
+ * under the source name. Datasets a source has no page for are skipped.
+ */
+public class CrawlScheduler {
+    public enum Dataset {
+        PRICES, WORK_HOURS, LOCATIONS
+    }
+
+    private final List<Crawl> crawls = new ArrayList<>();
+    private final Executor executor;
+
+    /**
+     * @param cacheDir   page cache directory shared by all sources, or null to always
+     *                   download the full pages
+     * @param maxRetries retries of a failed request, see {@link RateLimitedTransport}
+     */
+    public CrawlScheduler(List<SourceDescriptor> sources, Transport transport, Path cacheDir, Duration maxAge,
+                          int maxRetries, ParkingParser parser, MultiFormatStorage storage, Executor executor) {
+        for (SourceDescriptor source : sources) {
+            // the datasets of a source are fetched at the same time, the locations with up to
+            // max concurrent requests
+            int maxConcurrency = Math.max(RateLimitedTransport.DEFAULT_MAX_CONCURRENCY,
+                    Dataset.values().length + source.getMaxConcurrentRequests());
+            Transport sourceTransport = RateLimitedTransport.Builder.newBuilder()
+                    .transport(transport)
+                    .requestsPerSecond(source.getRequestsPerSecond(), source.getMaxConcurrentRequests())
+                    .maxConcurrency(maxConcurrency)
+                    .maxRetries(maxRetries)
+                    .build();
+
+            // pages are cached by url, so the sources can share the directory
+            HttpCache cache = cacheDir == null ? null : new HttpCache(cacheDir, maxAge, sourceTransport);
+            crawls.add(new Crawl(source,
+                    new ParkingClient(source, source.getMaxConcurrentRequests(), cache, sourceTransport),
+                    parser.withSource(source.getName()).withZoneRegistry(source.getZoneRegistry()),
+                    storage.forSource(source.getName())));
+        }
+
+        this.executor = executor;
+    }
+
+    /**
+     * @return one message per source dataset that failed, empty if every dataset was stored
+     */
+    public List<String> run(Set<Dataset> datasets) {
+        System.out.printf("Crawling %d sources ...\n", crawls.size());
+
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (Crawl crawl : crawls) {
+            for (Dataset dataset : datasets) {
+                String name = crawl.source.getName() + "_" + dataset.name().toLowerCase(Locale.ROOT);
+                CompletableFuture<List<String[]>> rows = crawl.fetch(dataset);
+                if (rows == null) {
+                    System.out.println("Skipping " + name + ", the source has no page for it.");
+                    continue;
+                }
+
+                pending.add(rows.thenAcceptAsync(data -> {
+                    try {
+                        int records = crawl.store(dataset, data, name);
+                        System.out.printf("Stored %s, %d records.\n", name, records);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor).exceptionally(error -> {
+                    String message = name + ": " + cause(error).getMessage();
+                    failures.add(message);
+                    System.out.println("Failed to crawl " + message);
+                    return null;
+                }));
+            }
+        }
+
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        System.out.printf("Crawl finished, %d of %d datasets failed.\n", failures.size(), pending.size());
+        return new ArrayList<>(failures);
+    }
+
+    private static Throwable cause(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof UncheckedIOException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private class Crawl {
+        final SourceDescriptor source;
+        final ParkingClient client;
+        // parser and storage record their metrics under the source name, the parser
+        // assigns the zone ids of the source
+        final ParkingParser parser;
+        final MultiFormatStorage storage;
+
+        Crawl(SourceDescriptor source, ParkingClient client, ParkingParser parser, MultiFormatStorage storage) {
+            this.source = source;
+            this.client = client;
+            this.parser = parser;
+            this.storage = storage;
+        }
+
+        /**
+         * @return the table rows, or null if the source has no page for the dataset
+         */
+        CompletableFuture<List<String[]>> fetch(Dataset dataset) {
+            switch (dataset) {
+                case PRICES:
+                    return source.getPricesUrl() == null ? null : client.fetchParkingPricesAsync();
+                case WORK_HOURS:
+                    return source.getWorkHoursUrl() == null ? null : client.fetchParkingWorkHoursAsync();
+                case LOCATIONS:
+                    return source.getZones().isEmpty() ? null : client.fetchParkingLocationsAsync();
+                default:
+                    throw new IllegalArgumentException("Unknown dataset: " + dataset);
+            }
+        }
+
+        /**
+         * @return number of stored records
+         */
+        int store(Dataset dataset, List<String[]> rows, String filename) throws IOException {
+            switch (dataset) {
+                case PRICES:
+                    List<ParkingPrice> prices = parser.parseParkingPrices(rows);
+                    storage.storePrices(prices, filename);
+                    return prices.size();
+                case WORK_HOURS:
+                    List<ParkingTime> workHours = parser.parseParkingWorkHours(rows);
+                    storage.storeWorkHours(workHours, filename);
+                    return workHours.size();
+                case LOCATIONS:
+                    List<ParkingLocation> locations = parser.parseParkingLocations(rows, source.getCity());
+                    storage.storeLocations(locations, filename);
+                    return locations.size();
+                default:
+                    throw new IllegalArgumentException("Unknown dataset: " + dataset);
+            }
+        }
+    }
+}
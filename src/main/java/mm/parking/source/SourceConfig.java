@@ -0,0 +1,161 @@
+package mm.parking.source;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads source descriptors from a JSON file:
+ *
+ * <pre>
+ * {
+ *   "sources": [
+ *     {
+ *       "name": "zagreb",
+ *       "city": "Zagreb",
+ *       "pricesUrl": "http://www.zagrebparking.hr/default.aspx?id=55",
+ *       "workHoursUrl": "http://www.zagrebparking.hr/default.aspx?id=1461",
+ *       "locationsUrl": "http://www.zagrebparking.hr/default.aspx?action=filterUlica&amp;zona_id={zone}",
+ *       "zones": "1-10",
+ *       "zoneNames": { "1": "Zona 1", "2": "Zona 1.1" },
+ *       "tableClass": "pageContent",
+ *       "locationsTableClass": null,
+ *       "maxConcurrentRequests": 2,
+ *       "requestsPerSecond": 5
+ *     }
+ *   ]
+ * }
+ * </pre>
+ *
+ * Only name and city are required. Zones are ranges and single ids separated by commas,
+ * zones without a name are called "Zona [id]". Table classes name the element holding
+ * the data table, null means the first table of the page.
+ */
+public final class SourceConfig {
+    // guards against a typo like "1-10000000" in a range
+    private static final int MAX_ZONES = 10000;
+
+    private SourceConfig() {
+
+    }
+
+    public static List<SourceDescriptor> load(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            JsonElement root = new JsonParser().parse(reader);
+            if (!root.isJsonObject() || !root.getAsJsonObject().has("sources")
+                    || !root.getAsJsonObject().get("sources").isJsonArray()) {
+                throw new IOException("Invalid source config " + path
+                        + ": expected an object with a \"sources\" array");
+            }
+
+            JsonArray sources = root.getAsJsonObject().getAsJsonArray("sources");
+            List<SourceDescriptor> descriptors = new ArrayList<>(sources.size());
+            Set<String> names = new HashSet<>();
+            for (JsonElement element : sources) {
+                if (!element.isJsonObject()) {
+                    throw new IOException("Invalid source config " + path + ": expected a source object: " + element);
+                }
+                SourceDescriptor descriptor = parse(element.getAsJsonObject());
+                if (!names.add(descriptor.getName())) {
+                    throw new IOException("Invalid source config " + path + ": duplicate source name "
+                            + descriptor.getName());
+                }
+                descriptors.add(descriptor);
+            }
+            return descriptors;
+        } catch (JsonParseException | IllegalArgumentException | IllegalStateException | ClassCastException e) {
+            throw new IOException("Invalid source config " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static SourceDescriptor parse(JsonObject json) {
+        SourceDescriptor.Builder builder = SourceDescriptor.Builder.newBuilder()
+                .name(string(json, "name"))
+                .city(string(json, "city"))
+                .pricesUrl(string(json, "pricesUrl"))
+                .workHoursUrl(string(json, "workHoursUrl"))
+                .locationsUrl(string(json, "locationsUrl"));
+
+        // an explicit null selects the first table of the page
+        if (json.has("tableClass")) {
+            builder.tableClass(string(json, "tableClass"));
+        }
+        if (json.has("locationsTableClass")) {
+            builder.locationsTableClass(string(json, "locationsTableClass"));
+        }
+        if (has(json, "maxConcurrentRequests")) {
+            builder.maxConcurrentRequests(json.get("maxConcurrentRequests").getAsInt());
+        }
+        if (has(json, "requestsPerSecond")) {
+            builder.requestsPerSecond(json.get("requestsPerSecond").getAsDouble());
+        }
+
+        JsonObject zoneNames = has(json, "zoneNames") ? json.getAsJsonObject("zoneNames") : new JsonObject();
+        String zones = string(json, "zones");
+        List<Integer> zoneIds = zones != null ? parseZones(zones) : Collections.emptyList();
+        for (int id : zoneIds) {
+            JsonElement zoneName = zoneNames.get(String.valueOf(id));
+            builder.zone(id, zoneName != null && !zoneName.isJsonNull() ? zoneName.getAsString() : "Zona " + id);
+        }
+        for (String id : zoneNames.keySet()) {
+            if (!zoneIds.contains(Integer.parseInt(id))) {
+                throw new IllegalArgumentException("Zone " + id + " is named but not in zones: " + zones);
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * @param zones e.g. "1-10" or "1-3, 5, 8-9"
+     */
+    static List<Integer> parseZones(String zones) {
+        List<Integer> ids = new ArrayList<>();
+        for (String part : zones.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+
+            int separator = part.indexOf('-');
+            try {
+                if (separator < 0) {
+                    ids.add(Integer.parseInt(part));
+                } else {
+                    int first = Integer.parseInt(part.substring(0, separator).trim());
+                    int last = Integer.parseInt(part.substring(separator + 1).trim());
+                    if (first > last || last - first >= MAX_ZONES) {
+                        throw new IllegalArgumentException("Invalid zone range: " + part);
+                    }
+                    for (int id = first; id <= last; id++) {
+                        ids.add(id);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a zone id or range: " + part);
+            }
+        }
+        return ids;
+    }
+
+    private static boolean has(JsonObject json, String name) {
+        return json.has(name) && !json.get(name).isJsonNull();
+    }
+
+    private static String string(JsonObject json, String name) {
+        return has(json, name) ? json.get(name).getAsString() : null;
+    }
+}
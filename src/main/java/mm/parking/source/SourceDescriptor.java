@@ -0,0 +1,256 @@
+package mm.parking.source;
+
+import mm.parking.ZoneRegistry;
+import mm.parking.client.TableExtractor;
+import mm.parking.parser.ParkingParser;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Where and how the parking data of one operator is crawled: page urls, the zones whose
+ * location pages are requested, which tables hold the data and the request budget.
+ */
+public class SourceDescriptor {
+    /**
+     * Replaced by the zone id in the locations url template.
+     */
+    public static final String ZONE_PLACEHOLDER = "{zone}";
+
+    // zone pages requested at the same time, the source's rate limiter lowers it when the
+    // server slows down
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+    // used as part of the output filenames
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    /**
+     * The zagrebparking.hr pages.
+     */
+    public static final SourceDescriptor ZAGREB = Builder.newBuilder()
+            .name("zagreb")
+            .city(ParkingParser.DEFAULT_CITY)
+            .pricesUrl("http://www.zagrebparking.hr/default.aspx?id=55")
+            .workHoursUrl("http://www.zagrebparking.hr/default.aspx?id=1461")
+            .locationsUrl("http://www.zagrebparking.hr/default.aspx?action=filterUlica&zona_id=" + ZONE_PLACEHOLDER)
+            .zone(1, "Zona 1")
+            .zone(2, "Zona 1.1")
+            .zone(3, "Zona 1.2")
+            .zone(4, "Zona 2.1")
+            .zone(5, "Zona 2.2")
+            .zone(6, "Zona 2.3")
+            .zone(7, "Zona 3")
+            .zone(8, "Zona 3 Sesvete")
+            .zone(9, "Zona 4.1")
+            .zone(10, "Zona 4.2")
+            .zoneRegistry(ZoneRegistry.DEFAULT)
+            .build();
+
+    private final String name;
+    private final String city;
+    private final String pricesUrl;
+    private final String workHoursUrl;
+    private final String locationsUrl;
+    private final Map<Integer, String> zones;
+    private final ZoneRegistry zoneRegistry;
+    private final String tableClass;
+    private final String locationsTableClass;
+    private final int maxConcurrentRequests;
+    private final double requestsPerSecond;
+
+    private SourceDescriptor(Builder builder) {
+        if (builder.name == null || !NAME.matcher(builder.name).matches()) {
+            throw new IllegalArgumentException("Source name must consist of letters, digits, '_' and '-': "
+                    + builder.name);
+        }
+        if (builder.city == null || builder.city.trim().isEmpty()) {
+            throw new IllegalArgumentException("No city for source " + builder.name);
+        }
+        if (!builder.zones.isEmpty()
+                && (builder.locationsUrl == null || !builder.locationsUrl.contains(ZONE_PLACEHOLDER))) {
+            throw new IllegalArgumentException("Locations url of source " + builder.name + " must contain "
+                    + ZONE_PLACEHOLDER);
+        }
+        if (builder.maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("Max concurrent requests must be positive: "
+                    + builder.maxConcurrentRequests);
+        }
+        if (!(builder.requestsPerSecond > 0)) {
+            throw new IllegalArgumentException("Request rate must be positive: " + builder.requestsPerSecond);
+        }
+
+        this.name = builder.name;
+        this.city = builder.city;
+        this.pricesUrl = builder.pricesUrl;
+        this.workHoursUrl = builder.workHoursUrl;
+        this.locationsUrl = builder.locationsUrl;
+        this.zones = Collections.unmodifiableMap(new TreeMap<>(builder.zones));
+        this.zoneRegistry = builder.zoneRegistry != null ? builder.zoneRegistry : new ZoneRegistry(zones);
+        this.tableClass = builder.tableClass;
+        this.locationsTableClass = builder.locationsTableClass;
+        this.maxConcurrentRequests = builder.maxConcurrentRequests;
+        this.requestsPerSecond = builder.requestsPerSecond;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    /**
+     * @return url of the price page, or null if the source has none
+     */
+    public String getPricesUrl() {
+        return pricesUrl;
+    }
+
+    /**
+     * @return url of the work hours page, or null if the source has none
+     */
+    public String getWorkHoursUrl() {
+        return workHoursUrl;
+    }
+
+    public String getLocationsUrl(int zoneId) {
+        return locationsUrl.replace(ZONE_PLACEHOLDER, String.valueOf(zoneId));
+    }
+
+    /**
+     * @return zone names by zone id, sorted by id
+     */
+    public Map<Integer, String> getZones() {
+        return zones;
+    }
+
+    /**
+     * @return canonical zone ids of this source, the known zones keep their ids from
+     * {@link #getZones()}
+     */
+    public ZoneRegistry getZoneRegistry() {
+        return zoneRegistry;
+    }
+
+    /**
+     * @return class of the element holding the price and work hours tables, null for the
+     * first table of the page
+     */
+    public String getTableClass() {
+        return tableClass;
+    }
+
+    /**
+     * @return class of the element holding the locations table, null for the first table
+     * of the page
+     */
+    public String getLocationsTableClass() {
+        return locationsTableClass;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "SourceDescriptor{" +
+                "name='" + name + '\'' +
+                ", city='" + city + '\'' +
+                ", zones=" + zones.size() +
+                ", maxConcurrentRequests=" + maxConcurrentRequests +
+                '}';
+    }
+
+    public static class Builder {
+        private String name;
+        private String city;
+        private String pricesUrl;
+        private String workHoursUrl;
+        private String locationsUrl;
+        private final Map<Integer, String> zones = new TreeMap<>();
+        private ZoneRegistry zoneRegistry;
+        private String tableClass = TableExtractor.CLASS_PAGE_CONTENT;
+        private String locationsTableClass;
+        private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+        private double requestsPerSecond = Double.POSITIVE_INFINITY;
+
+        private Builder() {
+
+        }
+
+        public static Builder newBuilder() {
+            return new Builder();
+        }
+
+        public SourceDescriptor build() {
+            return new SourceDescriptor(this);
+        }
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder city(String city) {
+            this.city = city;
+            return this;
+        }
+
+        public Builder pricesUrl(String pricesUrl) {
+            this.pricesUrl = pricesUrl;
+            return this;
+        }
+
+        public Builder workHoursUrl(String workHoursUrl) {
+            this.workHoursUrl = workHoursUrl;
+            return this;
+        }
+
+        /**
+         * @param locationsUrl url template containing {@link #ZONE_PLACEHOLDER}
+         */
+        public Builder locationsUrl(String locationsUrl) {
+            this.locationsUrl = locationsUrl;
+            return this;
+        }
+
+        public Builder zone(int id, String name) {
+            zones.put(id, name);
+            return this;
+        }
+
+        // the Zagreb source shares the default registry with records built without a source
+        private Builder zoneRegistry(ZoneRegistry zoneRegistry) {
+            this.zoneRegistry = zoneRegistry;
+            return this;
+        }
+
+        public Builder tableClass(String tableClass) {
+            this.tableClass = tableClass;
+            return this;
+        }
+
+        public Builder locationsTableClass(String locationsTableClass) {
+            this.locationsTableClass = locationsTableClass;
+            return this;
+        }
+
+        public Builder maxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        public Builder requestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+    }
+}
@@ -4,10 +4,18 @@ import mm.parking.ParkingLocation;
 import mm.parking.ParkingPrice;
 import mm.parking.ParkingTime;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
 public abstract class FileStorage {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final String dirPath;
 
     public FileStorage(String dirPath) {
@@ -18,6 +26,16 @@ public abstract class FileStorage {
         return dirPath;
     }
 
+    /**
+     * Opens the buffered output the store methods write filename to. Subclasses can
+     * override this to write somewhere other than the file system.
+     */
+    protected OutputStream newOutputStream(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(dirPath + filename),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+    }
+
     public abstract void storePrices(List<ParkingPrice> prices, String filename) throws IOException;
 
     public abstract void storeWorkHours(List<ParkingTime> workTimeList, String filename) throws IOException;
@@ -0,0 +1,90 @@
+package mm.parking.storage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Content hashes of the raw tables the stored files were built from, kept in a
+ * properties file next to the output files. A table whose hash did not change
+ * since the last run does not need to be parsed or written again.
+ *
+ * The store is bound to an output configuration (e.g. the selected formats) and to
+ * {@link #OUTPUT_VERSION}, all hashes are discarded when either differs from the stored
+ * one.
+ */
+public class FingerprintStore {
+    /**
+     * Version of the parsing and output code. Bump it when a change makes the same table
+     * produce different files, so that the files of earlier runs are written again.
+     */
+    public static final int OUTPUT_VERSION = 1;
+
+    private static final String FILENAME = "fingerprints.properties";
+    private static final String KEY_CONFIG = "config";
+
+    // FNV-1a 64 bit parameters
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char CELL_SEPARATOR = 0x1f;
+    private static final char ROW_SEPARATOR = 0x1e;
+
+    private final Path path;
+    private final Properties values = new Properties();
+
+    public FingerprintStore(String dirPath, String config) throws IOException {
+        this.path = Paths.get(dirPath + FILENAME);
+
+        if (Files.isRegularFile(path)) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                values.load(reader);
+            }
+        }
+
+        String versionedConfig = "v" + OUTPUT_VERSION + ";" + config;
+        if (!versionedConfig.equals(values.getProperty(KEY_CONFIG))) {
+            values.clear();
+            values.setProperty(KEY_CONFIG, versionedConfig);
+        }
+    }
+
+    /**
+     * Hashes the cell texts of rows, including row and cell boundaries.
+     */
+    public static long fingerprint(List<String[]> rows) {
+        long hash = FNV_OFFSET_BASIS;
+        for (String[] row : rows) {
+            for (String cell : row) {
+                for (int i = 0; i < cell.length(); i++) {
+                    hash = (hash ^ cell.charAt(i)) * FNV_PRIME;
+                }
+                hash = (hash ^ CELL_SEPARATOR) * FNV_PRIME;
+            }
+            hash = (hash ^ ROW_SEPARATOR) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public synchronized boolean matches(String key, long fingerprint) {
+        return Long.toHexString(fingerprint).equals(values.getProperty(key));
+    }
+
+    public synchronized void put(String key, long fingerprint) {
+        values.setProperty(key, Long.toHexString(fingerprint));
+    }
+
+    public synchronized void save() throws IOException {
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), "fingerprints", ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            values.store(writer, null);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,154 @@
+package mm.parking.storage;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import mm.parking.ParkingLocation;
+import mm.parking.ParkingPrice;
+import mm.parking.ParkingTime;
+
+import java.io.IOException;
+
+/**
+ * Hand written Gson adapters for the parking models. They produce the same field names
+ * as reflective serialization but skip the reflection lookups on every record.
+ */
+final class JsonAdapters {
+
+    private JsonAdapters() {
+
+    }
+
+    static GsonBuilder register(GsonBuilder builder) {
+        return builder.registerTypeAdapter(ParkingPrice.class, new PriceAdapter().nullSafe())
+                .registerTypeAdapter(ParkingTime.class, new TimeAdapter().nullSafe())
+                .registerTypeAdapter(ParkingLocation.class, new LocationAdapter().nullSafe());
+    }
+
+    static final class PriceAdapter extends TypeAdapter<ParkingPrice> {
+        @Override
+        public void write(JsonWriter out, ParkingPrice price) throws IOException {
+            out.beginObject();
+            out.name("zone").value(price.getZone());
+            out.name("phoneNumber").value(price.getPhoneNumber());
+            out.name("hourlyPrice").value(price.getHourlyPrice());
+            out.name("dailyPrice").value(price.getDailyPrice());
+            out.name("maxHours").value(price.getMaxHours());
+            out.endObject();
+        }
+
+        @Override
+        public ParkingPrice read(JsonReader in) throws IOException {
+            ParkingPrice.Builder builder = ParkingPrice.Builder.newBuilder();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "zone":
+                        builder.zone(nextString(in));
+                        break;
+                    case "phoneNumber":
+                        builder.phoneNumber(nextString(in));
+                        break;
+                    case "hourlyPrice":
+                        builder.hourlyPrice(in.nextDouble());
+                        break;
+                    case "dailyPrice":
+                        builder.dailyPrice(in.nextDouble());
+                        break;
+                    case "maxHours":
+                        builder.maxHours(in.nextInt());
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+    }
+
+    static final class TimeAdapter extends TypeAdapter<ParkingTime> {
+        @Override
+        public void write(JsonWriter out, ParkingTime time) throws IOException {
+            out.beginObject();
+            out.name("zone").value(time.getZone());
+            out.name("workDayHours").value(time.getWorkDayHours());
+            out.name("saturdayHours").value(time.getSaturdayHours());
+            out.name("sundayHolidayHours").value(time.getSundayHolidayHours());
+            out.endObject();
+        }
+
+        @Override
+        public ParkingTime read(JsonReader in) throws IOException {
+            ParkingTime.Builder builder = ParkingTime.Builder.newBuilder();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "zone":
+                        builder.zone(nextString(in));
+                        break;
+                    case "workDayHours":
+                        builder.workDayHours(nextString(in));
+                        break;
+                    case "saturdayHours":
+                        builder.saturdayHours(nextString(in));
+                        break;
+                    case "sundayHolidayHours":
+                        builder.sundayHolidayHours(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+    }
+
+    static final class LocationAdapter extends TypeAdapter<ParkingLocation> {
+        @Override
+        public void write(JsonWriter out, ParkingLocation location) throws IOException {
+            out.beginObject();
+            out.name("zone").value(location.getZone());
+            out.name("city").value(location.getCity());
+            out.name("address").value(location.getAddress());
+            out.endObject();
+        }
+
+        @Override
+        public ParkingLocation read(JsonReader in) throws IOException {
+            ParkingLocation.Builder builder = ParkingLocation.Builder.newBuilder();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "zone":
+                        builder.zone(nextString(in));
+                        break;
+                    case "city":
+                        builder.city(nextString(in));
+                        break;
+                    case "address":
+                        builder.address(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return builder.build();
+        }
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
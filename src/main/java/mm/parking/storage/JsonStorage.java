@@ -1,47 +1,80 @@
 package mm.parking.storage;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 import mm.parking.ParkingLocation;
 import mm.parking.ParkingPrice;
 import mm.parking.ParkingTime;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+/**
+ * Writes JSON arrays record by record through a {@link JsonWriter}, the document is never
+ * built in memory as a whole. Output is always UTF-8.
+ */
 public class JsonStorage extends FileStorage {
     private final Gson gson;
+    private final TypeAdapter<ParkingPrice> priceAdapter;
+    private final TypeAdapter<ParkingTime> timeAdapter;
+    private final TypeAdapter<ParkingLocation> locationAdapter;
+
+    /**
+     * @param compact if true the output is written on a single line, otherwise it is pretty printed
+     */
+    public JsonStorage(String dirPath, boolean compact) {
+        this(dirPath, newGson(compact));
+    }
 
     public JsonStorage(String dirPath, Gson gson) {
         super(dirPath);
         this.gson = gson;
+        this.priceAdapter = gson.getAdapter(ParkingPrice.class);
+        this.timeAdapter = gson.getAdapter(ParkingTime.class);
+        this.locationAdapter = gson.getAdapter(ParkingLocation.class);
+    }
+
+    /**
+     * Creates a Gson instance with the parking model adapters registered.
+     */
+    public static Gson newGson(boolean compact) {
+        GsonBuilder builder = JsonAdapters.register(new GsonBuilder());
+        if (!compact) {
+            builder.setPrettyPrinting();
+        }
+        return builder.create();
     }
 
     @Override
     public void storePrices(List<ParkingPrice> prices, String filename) throws IOException {
-        Type type = new TypeToken<List<ParkingPrice>>(){}.getType();
-        write(prices, type, filename);
+        write(prices, priceAdapter, filename);
     }
 
     @Override
     public void storeWorkHours(List<ParkingTime> workHours, String filename) throws IOException {
-        Type type = new TypeToken<List<ParkingTime>>(){}.getType();
-        write(workHours, type, filename);
+        write(workHours, timeAdapter, filename);
     }
 
     @Override
     public void storeLocations(List<ParkingLocation> locations, String filename) throws IOException {
-        Type type = new TypeToken<List<ParkingLocation>>(){}.getType();
-        write(locations, type, filename);
+        write(locations, locationAdapter, filename);
     }
 
-    private <T> void write(List<T> data, Type type, String filename) throws IOException {
-        String json = gson.toJson(data, type);
-        Path path = Paths.get(getDirPath() + filename);
-        Files.write(path, json.getBytes());
+    private <T> void write(List<T> data, TypeAdapter<T> adapter, String filename) throws IOException {
+        Writer writer = new OutputStreamWriter(newOutputStream(filename), StandardCharsets.UTF_8);
+        try (JsonWriter out = gson.newJsonWriter(writer)) {
+            // newJsonWriter does not apply this setting, Gson.toJson does
+            out.setHtmlSafe(gson.htmlSafe());
+            out.beginArray();
+            for (T item : data) {
+                adapter.write(out, item);
+            }
+            out.endArray();
+        }
     }
 }
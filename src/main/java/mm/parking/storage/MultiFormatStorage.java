@@ -0,0 +1,178 @@
+package mm.parking.storage;
+
+import mm.parking.ParkingLocation;
+import mm.parking.ParkingPrice;
+import mm.parking.ParkingTime;
+import mm.parking.metrics.RunMetrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Writes the same dataset with several storage back-ends at the same time.
+ * Each back-end is registered with the file extension it writes to, the filename
+ * passed to the store methods is used as the base name for all of them.
+ *
+ * With metrics set, the time and the size of the written file are recorded per source,
+ * dataset and back-end, the back-end named after its extension (e.g. "json"). Filenames
+ * are not recorded, they vary between runs.
+ */
+public class MultiFormatStorage extends FileStorage {
+    private final Executor executor;
+    private final RunMetrics metrics;
+    private final String source;
+    private final List<FileStorage> storages;
+    private final List<String> extensions;
+
+    public MultiFormatStorage(String dirPath, Executor executor) {
+        this(dirPath, executor, null);
+    }
+
+    /**
+     * @param metrics records every write, or null
+     */
+    public MultiFormatStorage(String dirPath, Executor executor, RunMetrics metrics) {
+        this(dirPath, executor, metrics, RunMetrics.DEFAULT_SOURCE, new ArrayList<>(), new ArrayList<>());
+    }
+
+    private MultiFormatStorage(String dirPath, Executor executor, RunMetrics metrics, String source,
+                               List<FileStorage> storages, List<String> extensions) {
+        super(dirPath);
+        this.executor = executor;
+        this.metrics = metrics;
+        this.source = source;
+        this.storages = storages;
+        this.extensions = extensions;
+    }
+
+    /**
+     * @param source name of the source the stored records are from, recorded with the metrics
+     * @return a storage writing with the same back-ends, including those added later
+     */
+    public MultiFormatStorage forSource(String source) {
+        return new MultiFormatStorage(getDirPath(), executor, metrics, source, storages, extensions);
+    }
+
+    public MultiFormatStorage add(FileStorage storage, String extension) {
+        storages.add(storage);
+        extensions.add(extension);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return storages.isEmpty();
+    }
+
+    /**
+     * @return true if the file for filename exists for every back-end
+     */
+    public boolean filesExist(String filename) {
+        for (int i = 0; i < storages.size(); i++) {
+            if (!Files.isRegularFile(Paths.get(storages.get(i).getDirPath() + filename + extensions.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void storePrices(List<ParkingPrice> prices, String filename) throws IOException {
+        storeAll(RunMetrics.DATASET_PRICES, filename, (storage, name) -> storage.storePrices(prices, name));
+    }
+
+    @Override
+    public void storeWorkHours(List<ParkingTime> workTimeList, String filename) throws IOException {
+        storeAll(RunMetrics.DATASET_WORK_HOURS, filename,
+                (storage, name) -> storage.storeWorkHours(workTimeList, name));
+    }
+
+    @Override
+    public void storeLocations(List<ParkingLocation> locations, String filename) throws IOException {
+        storeAll(RunMetrics.DATASET_LOCATIONS, filename,
+                (storage, name) -> storage.storeLocations(locations, name));
+    }
+
+    private void storeAll(String dataset, String filename, StoreTask task) throws IOException {
+        if (storages.isEmpty()) {
+            return;
+        }
+
+        // the first back-end is written on the calling thread, the others are handed to the executor
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (int i = 1; i < storages.size(); i++) {
+            int index = i;
+            pending.add(CompletableFuture.runAsync(() -> {
+                try {
+                    store(index, dataset, filename, task);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+
+        List<Throwable> failures = new ArrayList<>();
+        List<String> failedFiles = new ArrayList<>();
+        try {
+            store(0, dataset, filename, task);
+        } catch (IOException | RuntimeException e) {
+            failures.add(e);
+            failedFiles.add(filename + extensions.get(0));
+        }
+
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                pending.get(i).join();
+            } catch (CompletionException e) {
+                failures.add(e.getCause());
+                failedFiles.add(filename + extensions.get(i + 1));
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            StringBuilder sb = new StringBuilder("Failed to write ")
+                    .append(failures.size())
+                    .append(" of ")
+                    .append(storages.size())
+                    .append(" files:");
+            for (int i = 0; i < failures.size(); i++) {
+                sb.append(' ').append(failedFiles.get(i)).append(" [").append(failures.get(i).getMessage()).append(']');
+            }
+
+            IOException exception = new IOException(sb.toString());
+            failures.forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+
+    private void store(int index, String dataset, String filename, StoreTask task) throws IOException {
+        FileStorage storage = storages.get(index);
+        String name = filename + extensions.get(index);
+        if (metrics == null) {
+            task.store(storage, name);
+            return;
+        }
+
+        String extension = extensions.get(index);
+        String backend = extension.startsWith(".") ? extension.substring(1) : extension;
+        long start = System.nanoTime();
+        try {
+            task.store(storage, name);
+        } catch (IOException | RuntimeException e) {
+            metrics.recordStore(source, dataset, backend, System.nanoTime() - start, 0, true);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        metrics.recordStore(source, dataset, backend, nanos, Files.size(Paths.get(storage.getDirPath() + name)), false);
+    }
+
+    @FunctionalInterface
+    private interface StoreTask {
+        void store(FileStorage storage, String filename) throws IOException;
+    }
+}
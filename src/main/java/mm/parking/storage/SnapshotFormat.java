@@ -0,0 +1,88 @@
+package mm.parking.storage;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the binary snapshot files written by {@link SnapshotStorage}.
+ *
+ * <pre>
+ * header (little endian, 40 bytes)
+ *     int    magic            "PKSN"
+ *     short  version
+ *     byte   record type      1 = price, 2 = work hours, 3 = location
+ *     byte   column count
+ *     int    record count
+ *     int    string count
+ *     long   string offsets position
+ *     long   string data position
+ *     long   zone index position
+ * column positions            column count x long, each pointing to a column
+ * string offsets              (string count + 1) x int, relative to string data
+ * string data                 UTF-8 bytes of all dictionary strings
+ * columns                     record count values each, 8 byte aligned
+ * zone index, 8 byte aligned
+ *     int    zone count
+ *     zone count x (int name, int first, int count)
+ *                             canonical zone name as string index (-1 for records
+ *                             without zone), sorted by the UTF-8 bytes of the name with
+ *                             -1 first, and the range of the zone in the records below
+ *     record count x int      record indexes grouped by zone, file order within a zone
+ * </pre>
+ *
+ * String fields are stored as int indexes into the string dictionary, -1 means null.
+ * Numeric fields are stored as plain int or double columns. Records are looked up by zone
+ * with a binary search over the zone index, zones are indexed by their canonical name
+ * (see {@link mm.parking.ZoneRegistry#canonicalName(String)}) so every spelling of a
+ * zone finds the same records.
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x4E534B50; // "PKSN" in little endian
+    static final short VERSION = 2;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final byte TYPE_PRICE = 1;
+    static final byte TYPE_WORK_HOURS = 2;
+    static final byte TYPE_LOCATION = 3;
+
+    static final int HEADER_SIZE = 40;
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_VERSION = 4;
+    static final int OFFSET_TYPE = 6;
+    static final int OFFSET_COLUMN_COUNT = 7;
+    static final int OFFSET_RECORD_COUNT = 8;
+    static final int OFFSET_STRING_COUNT = 12;
+    static final int OFFSET_STRING_OFFSETS = 16;
+    static final int OFFSET_STRING_DATA = 24;
+    static final int OFFSET_ZONE_INDEX = 32;
+
+    static final int ZONE_ENTRY_SIZE = 12;
+
+    static final int NULL_STRING = -1;
+
+    // column order per record type
+    static final int PRICE_ZONE = 0;
+    static final int PRICE_PHONE = 1;
+    static final int PRICE_HOURLY = 2;
+    static final int PRICE_DAILY = 3;
+    static final int PRICE_MAX_HOURS = 4;
+    static final int PRICE_COLUMNS = 5;
+
+    static final int TIME_ZONE = 0;
+    static final int TIME_WORK_DAY = 1;
+    static final int TIME_SATURDAY = 2;
+    static final int TIME_SUNDAY_HOLIDAY = 3;
+    static final int TIME_COLUMNS = 4;
+
+    static final int LOCATION_ZONE = 0;
+    static final int LOCATION_CITY = 1;
+    static final int LOCATION_ADDRESS = 2;
+    static final int LOCATION_COLUMNS = 3;
+
+    private SnapshotFormat() {
+
+    }
+
+    static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
@@ -0,0 +1,248 @@
+package mm.parking.storage;
+
+import mm.parking.ParkingLocation;
+import mm.parking.ParkingPrice;
+import mm.parking.ParkingTime;
+import mm.parking.ZoneRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static mm.parking.storage.SnapshotFormat.*;
+
+/**
+ * Read access to a snapshot written by {@link SnapshotStorage}. The file is memory mapped
+ * and all lookups read directly from the mapping, so processes reading the same snapshot
+ * share the page cache. Model objects are only created when a record is requested.
+ *
+ * Instances are safe for concurrent use, all reads use absolute buffer positions.
+ */
+public class SnapshotReader {
+    private final ByteBuffer buffer;
+    private final byte type;
+    private final int recordCount;
+    private final int stringOffsetsPosition;
+    private final int stringDataPosition;
+    private final int[] columnPositions;
+    private final int zoneIndexPosition;
+    private final int zoneCount;
+
+    private SnapshotReader(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(OFFSET_MAGIC) != MAGIC) {
+            throw new IOException("Not a parking snapshot");
+        }
+        if (buffer.getShort(OFFSET_VERSION) != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + buffer.getShort(OFFSET_VERSION));
+        }
+
+        this.type = buffer.get(OFFSET_TYPE);
+        this.recordCount = buffer.getInt(OFFSET_RECORD_COUNT);
+        this.stringOffsetsPosition = (int) buffer.getLong(OFFSET_STRING_OFFSETS);
+        this.stringDataPosition = (int) buffer.getLong(OFFSET_STRING_DATA);
+
+        int columnCount = buffer.get(OFFSET_COLUMN_COUNT);
+        this.columnPositions = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnPositions[i] = (int) buffer.getLong(HEADER_SIZE + 8 * i);
+        }
+        this.zoneIndexPosition = (int) buffer.getLong(OFFSET_ZONE_INDEX);
+        this.zoneCount = buffer.getInt(zoneIndexPosition);
+    }
+
+    public static SnapshotReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SnapshotReader(buffer.order(BYTE_ORDER));
+        }
+    }
+
+    public int size() {
+        return recordCount;
+    }
+
+    public boolean isPrices() {
+        return type == TYPE_PRICE;
+    }
+
+    public boolean isWorkHours() {
+        return type == TYPE_WORK_HOURS;
+    }
+
+    public boolean isLocations() {
+        return type == TYPE_LOCATION;
+    }
+
+    /**
+     * Zone of a record, the zone is the first column for every record type.
+     */
+    public String getZone(int index) {
+        return string(intValue(0, index));
+    }
+
+    /**
+     * Looks the zone up in the zone index with a binary search. Any spelling of a zone
+     * finds the same records, e.g. "I.1. zona" and "Zona 1.1".
+     *
+     * @param zone zone as written on any of the pages, or null for records without zone
+     * @return indexes of all records in zone, in file order
+     */
+    public int[] findZone(String zone) {
+        byte[] name = zone == null ? null : ZoneRegistry.canonicalName(zone).getBytes(StandardCharsets.UTF_8);
+        int entry = findZoneEntry(name);
+        if (entry < 0) {
+            return new int[0];
+        }
+
+        int entryPosition = zoneIndexPosition + 4 + ZONE_ENTRY_SIZE * entry;
+        int first = buffer.getInt(entryPosition + 4);
+        int count = buffer.getInt(entryPosition + 8);
+        int recordsPosition = zoneIndexPosition + 4 + ZONE_ENTRY_SIZE * zoneCount;
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = buffer.getInt(recordsPosition + 4 * (first + i));
+        }
+        return indexes;
+    }
+
+    public ParkingPrice getPrice(int index) {
+        checkType(TYPE_PRICE);
+        return ParkingPrice.Builder.newBuilder()
+                .zone(string(intValue(PRICE_ZONE, index)))
+                .phoneNumber(string(intValue(PRICE_PHONE, index)))
+                .hourlyPrice(doubleValue(PRICE_HOURLY, index))
+                .dailyPrice(doubleValue(PRICE_DAILY, index))
+                .maxHours(intValue(PRICE_MAX_HOURS, index))
+                .build();
+    }
+
+    public ParkingTime getWorkHours(int index) {
+        checkType(TYPE_WORK_HOURS);
+        return ParkingTime.Builder.newBuilder()
+                .zone(string(intValue(TIME_ZONE, index)))
+                .workDayHours(string(intValue(TIME_WORK_DAY, index)))
+                .saturdayHours(string(intValue(TIME_SATURDAY, index)))
+                .sundayHolidayHours(string(intValue(TIME_SUNDAY_HOLIDAY, index)))
+                .build();
+    }
+
+    public ParkingLocation getLocation(int index) {
+        checkType(TYPE_LOCATION);
+        return ParkingLocation.Builder.newBuilder()
+                .zone(string(intValue(LOCATION_ZONE, index)))
+                .city(string(intValue(LOCATION_CITY, index)))
+                .address(string(intValue(LOCATION_ADDRESS, index)))
+                .build();
+    }
+
+    public List<ParkingPrice> getPrices(String zone) {
+        List<ParkingPrice> prices = new ArrayList<>();
+        for (int index : findZone(zone)) {
+            prices.add(getPrice(index));
+        }
+        return prices;
+    }
+
+    public List<ParkingTime> getWorkHours(String zone) {
+        List<ParkingTime> workHours = new ArrayList<>();
+        for (int index : findZone(zone)) {
+            workHours.add(getWorkHours(index));
+        }
+        return workHours;
+    }
+
+    public List<ParkingLocation> getLocations(String zone) {
+        List<ParkingLocation> locations = new ArrayList<>();
+        for (int index : findZone(zone)) {
+            locations.add(getLocation(index));
+        }
+        return locations;
+    }
+
+    private int intValue(int column, int index) {
+        checkIndex(index);
+        return buffer.getInt(columnPositions[column] + 4 * index);
+    }
+
+    private double doubleValue(int column, int index) {
+        checkIndex(index);
+        return buffer.getDouble(columnPositions[column] + 8 * index);
+    }
+
+    private String string(int stringIndex) {
+        if (stringIndex == NULL_STRING) {
+            return null;
+        }
+
+        int start = stringDataPosition + buffer.getInt(stringOffsetsPosition + 4 * stringIndex);
+        int end = stringDataPosition + buffer.getInt(stringOffsetsPosition + 4 * (stringIndex + 1));
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param name encoded canonical zone name, or null
+     * @return position of the zone in the zone index, or -1
+     */
+    private int findZoneEntry(byte[] name) {
+        int low = 0;
+        int high = zoneCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entryName = buffer.getInt(zoneIndexPosition + 4 + ZONE_ENTRY_SIZE * middle);
+            int comparison = compareName(entryName, name);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares a dictionary entry with the encoded value in place, by unsigned bytes.
+     * Null sorts first.
+     */
+    private int compareName(int stringIndex, byte[] value) {
+        if (stringIndex == NULL_STRING || value == null) {
+            return Boolean.compare(value == null, stringIndex == NULL_STRING);
+        }
+
+        int start = stringDataPosition + buffer.getInt(stringOffsetsPosition + 4 * stringIndex);
+        int end = stringDataPosition + buffer.getInt(stringOffsetsPosition + 4 * (stringIndex + 1));
+        int length = Math.min(end - start, value.length);
+        for (int i = 0; i < length; i++) {
+            int comparison = Integer.compare(buffer.get(start + i) & 0xFF, value[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(end - start, value.length);
+    }
+
+    private void checkType(byte expected) {
+        if (type != expected) {
+            throw new IllegalStateException("Snapshot record type is " + type + ", not " + expected);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + recordCount);
+        }
+    }
+}
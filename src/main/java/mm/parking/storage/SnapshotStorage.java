@@ -0,0 +1,251 @@
+package mm.parking.storage;
+
+import mm.parking.ParkingLocation;
+import mm.parking.ParkingPrice;
+import mm.parking.ParkingTime;
+import mm.parking.ZoneRegistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static mm.parking.storage.SnapshotFormat.*;
+
+/**
+ * Writes datasets as binary columnar snapshots, see {@link SnapshotFormat} for the layout.
+ * Repeated strings such as zones and city are stored once in a dictionary, so a snapshot
+ * can be loaded with one bulk read and no text parsing.
+ */
+public class SnapshotStorage extends FileStorage {
+
+    public SnapshotStorage(String dirPath) {
+        super(dirPath);
+    }
+
+    @Override
+    public void storePrices(List<ParkingPrice> prices, String filename) throws IOException {
+        int count = prices.size();
+        Dictionary dictionary = new Dictionary();
+        int[] zones = new int[count];
+        int[] phones = new int[count];
+        double[] hourly = new double[count];
+        double[] daily = new double[count];
+        int[] maxHours = new int[count];
+        for (int i = 0; i < count; i++) {
+            ParkingPrice price = prices.get(i);
+            zones[i] = dictionary.index(price.getZone());
+            phones[i] = dictionary.index(price.getPhoneNumber());
+            hourly[i] = price.getHourlyPrice();
+            daily[i] = price.getDailyPrice();
+            maxHours[i] = price.getMaxHours();
+        }
+
+        write(filename, TYPE_PRICE, count, dictionary, zones, phones, hourly, daily, maxHours);
+    }
+
+    @Override
+    public void storeWorkHours(List<ParkingTime> workTimeList, String filename) throws IOException {
+        int count = workTimeList.size();
+        Dictionary dictionary = new Dictionary();
+        int[] zones = new int[count];
+        int[] workDays = new int[count];
+        int[] saturdays = new int[count];
+        int[] sundays = new int[count];
+        for (int i = 0; i < count; i++) {
+            ParkingTime time = workTimeList.get(i);
+            zones[i] = dictionary.index(time.getZone());
+            workDays[i] = dictionary.index(time.getWorkDayHours());
+            saturdays[i] = dictionary.index(time.getSaturdayHours());
+            sundays[i] = dictionary.index(time.getSundayHolidayHours());
+        }
+
+        write(filename, TYPE_WORK_HOURS, count, dictionary, zones, workDays, saturdays, sundays);
+    }
+
+    @Override
+    public void storeLocations(List<ParkingLocation> locations, String filename) throws IOException {
+        int count = locations.size();
+        Dictionary dictionary = new Dictionary();
+        int[] zones = new int[count];
+        int[] cities = new int[count];
+        int[] addresses = new int[count];
+        for (int i = 0; i < count; i++) {
+            ParkingLocation location = locations.get(i);
+            zones[i] = dictionary.index(location.getZone());
+            cities[i] = dictionary.index(location.getCity());
+            addresses[i] = dictionary.index(location.getAddress());
+        }
+
+        write(filename, TYPE_LOCATION, count, dictionary, zones, cities, addresses);
+    }
+
+    /**
+     * @param columns int[] or double[] arrays with count values each
+     */
+    private void write(String filename, byte type, int count, Dictionary dictionary, Object... columns) throws IOException {
+        // adds the canonical zone names to the dictionary, so it is built before encoding
+        ZoneIndex zoneIndex = new ZoneIndex((int[]) columns[0], dictionary);
+        List<byte[]> strings = dictionary.encoded();
+
+        long stringOffsetsPosition = HEADER_SIZE + 8L * columns.length;
+        long stringDataPosition = stringOffsetsPosition + 4L * (strings.size() + 1);
+        long stringDataSize = 0;
+        for (byte[] string : strings) {
+            stringDataSize += string.length;
+        }
+
+        long[] columnPositions = new long[columns.length];
+        long position = align(stringDataPosition + stringDataSize);
+        for (int i = 0; i < columns.length; i++) {
+            columnPositions[i] = position;
+            position = align(position + (long) count * (columns[i] instanceof double[] ? 8 : 4));
+        }
+        long zoneIndexPosition = position;
+        position = align(position + 4 + (long) ZONE_ENTRY_SIZE * zoneIndex.size() + 4L * count);
+
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large: " + position + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) position).order(BYTE_ORDER);
+        buffer.putInt(OFFSET_MAGIC, MAGIC)
+                .putShort(OFFSET_VERSION, VERSION)
+                .put(OFFSET_TYPE, type)
+                .put(OFFSET_COLUMN_COUNT, (byte) columns.length)
+                .putInt(OFFSET_RECORD_COUNT, count)
+                .putInt(OFFSET_STRING_COUNT, strings.size())
+                .putLong(OFFSET_STRING_OFFSETS, stringOffsetsPosition)
+                .putLong(OFFSET_STRING_DATA, stringDataPosition)
+                .putLong(OFFSET_ZONE_INDEX, zoneIndexPosition);
+
+        buffer.position(HEADER_SIZE);
+        for (long columnPosition : columnPositions) {
+            buffer.putLong(columnPosition);
+        }
+
+        int offset = 0;
+        for (byte[] string : strings) {
+            buffer.putInt(offset);
+            offset += string.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] string : strings) {
+            buffer.put(string);
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            buffer.position((int) columnPositions[i]);
+            if (columns[i] instanceof double[]) {
+                buffer.asDoubleBuffer().put((double[]) columns[i]);
+            } else {
+                buffer.asIntBuffer().put((int[]) columns[i]);
+            }
+        }
+
+        buffer.position((int) zoneIndexPosition);
+        zoneIndex.write(buffer, strings);
+
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(Paths.get(getDirPath() + filename),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Records grouped by canonical zone name, see {@link SnapshotFormat}.
+     */
+    private static final class ZoneIndex {
+        private final List<Integer> names = new ArrayList<>();
+        private final List<List<Integer>> records = new ArrayList<>();
+
+        ZoneIndex(int[] zones, Dictionary dictionary) {
+            Map<Integer, Integer> groups = new HashMap<>();
+            for (int i = 0; i < zones.length; i++) {
+                int name = zones[i] == NULL_STRING
+                        ? NULL_STRING
+                        : dictionary.index(ZoneRegistry.canonicalName(dictionary.get(zones[i])));
+                Integer group = groups.get(name);
+                if (group == null) {
+                    group = names.size();
+                    groups.put(name, group);
+                    names.add(name);
+                    records.add(new ArrayList<>());
+                }
+                records.get(group).add(i);
+            }
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        void write(ByteBuffer buffer, List<byte[]> strings) {
+            Integer[] order = new Integer[names.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> compare(names.get(a), names.get(b), strings));
+
+            buffer.putInt(order.length);
+            int first = 0;
+            for (int group : order) {
+                buffer.putInt(names.get(group)).putInt(first).putInt(records.get(group).size());
+                first += records.get(group).size();
+            }
+            for (int group : order) {
+                for (int record : records.get(group)) {
+                    buffer.putInt(record);
+                }
+            }
+        }
+
+        private static int compare(int a, int b, List<byte[]> strings) {
+            if (a == NULL_STRING || b == NULL_STRING) {
+                return Boolean.compare(b == NULL_STRING, a == NULL_STRING);
+            }
+            return Arrays.compareUnsigned(strings.get(a), strings.get(b));
+        }
+    }
+
+    private static final class Dictionary {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int index(String value) {
+            if (value == null) {
+                return NULL_STRING;
+            }
+
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = strings.size();
+                indexes.put(value, index);
+                strings.add(value);
+            }
+            return index;
+        }
+
+        String get(int index) {
+            return strings.get(index);
+        }
+
+        List<byte[]> encoded() {
+            List<byte[]> encoded = new ArrayList<>(strings.size());
+            for (String string : strings) {
+                encoded.add(string.getBytes(StandardCharsets.UTF_8));
+            }
+            return encoded;
+        }
+    }
+}
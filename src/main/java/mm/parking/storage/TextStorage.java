@@ -4,11 +4,11 @@ import mm.parking.ParkingLocation;
 import mm.parking.ParkingPrice;
 import mm.parking.ParkingTime;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class TextStorage extends FileStorage {
 
@@ -18,25 +18,27 @@ public class TextStorage extends FileStorage {
 
     @Override
     public void storePrices(List<ParkingPrice> prices, String filename) throws IOException {
-        List<String> data = prices.stream()
-                .map(ParkingPrice::toString)
-                .collect(Collectors.toList());
-        Files.write(Paths.get(getDirPath() + filename), data);
+        write(prices, filename);
     }
 
     @Override
     public void storeWorkHours(List<ParkingTime> workTimeList, String filename) throws IOException {
-        List<String> data = workTimeList.stream()
-                .map(ParkingTime::toString)
-                .collect(Collectors.toList());
-        Files.write(Paths.get(getDirPath() + filename), data);
+        write(workTimeList, filename);
     }
 
     @Override
     public void storeLocations(List<ParkingLocation> locations, String filename) throws IOException {
-        List<String> data = locations.stream()
-                .map(ParkingLocation::toString)
-                .collect(Collectors.toList());
-        Files.write(Paths.get(getDirPath() + filename), data);
+        write(locations, filename);
+    }
+
+    // one line per record, same as Files.write(path, lines)
+    private void write(List<?> data, String filename) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(newOutputStream(filename), StandardCharsets.UTF_8))) {
+            for (Object item : data) {
+                writer.write(item.toString());
+                writer.newLine();
+            }
+        }
     }
 }
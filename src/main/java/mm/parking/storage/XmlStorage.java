@@ -3,20 +3,24 @@ package mm.parking.storage;
 import mm.parking.ParkingLocation;
 import mm.parking.ParkingPrice;
 import mm.parking.ParkingTime;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.File;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
+/**
+ * Writes XML with a streaming writer, records are written to the output as they are
+ * visited so memory use does not depend on the number of records.
+ */
 public class XmlStorage extends FileStorage {
+    private static final String ENCODING = "UTF-8";
+    private static final String INDENT = "    ";
+
+    // factories are thread safe once configured
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
 
     public XmlStorage(String dirPath) {
         super(dirPath);
@@ -24,125 +28,81 @@ public class XmlStorage extends FileStorage {
 
     @Override
     public void storePrices(List<ParkingPrice> prices, String filename) throws IOException {
-        try {
-            Document document = newDocument();
-            Element root = document.createElement("parkingprices");
-            document.appendChild(root);
-            prices.forEach(price -> {
-                Element priceNode = document.createElement("price");
-
-                Element zone = document.createElement("zone");
-                zone.appendChild(document.createTextNode(price.getZone()));
-                priceNode.appendChild(zone);
-
-                Element phone = document.createElement("phone");
-                phone.appendChild(document.createTextNode(price.getPhoneNumber()));
-                priceNode.appendChild(phone);
-
-                Element hourly = document.createElement("hourlyprice");
-                hourly.appendChild(document.createTextNode(String.valueOf(price.getHourlyPrice())));
-                priceNode.appendChild(hourly);
-
-                Element daily = document.createElement("dailyprice");
-                daily.appendChild(document.createTextNode(String.valueOf(price.getDailyPrice())));
-                priceNode.appendChild(daily);
-
-                Element maxHours = document.createElement("maxhours");
-                maxHours.appendChild(document.createTextNode(String.valueOf(price.getMaxHours())));
-                priceNode.appendChild(maxHours);
-
-                root.appendChild(priceNode);
-            });
-            write(document, filename);
-        } catch (ParserConfigurationException | TransformerException e ) {
-            throw new IOException("XML configuration error: " + e.getMessage());
-        }
+        write(filename, "parkingprices", "price", prices, (writer, price) -> {
+            writeField(writer, "zone", price.getZone());
+            writeField(writer, "phone", price.getPhoneNumber());
+            writeField(writer, "hourlyprice", String.valueOf(price.getHourlyPrice()));
+            writeField(writer, "dailyprice", String.valueOf(price.getDailyPrice()));
+            writeField(writer, "maxhours", String.valueOf(price.getMaxHours()));
+        });
     }
 
     @Override
     public void storeWorkHours(List<ParkingTime> workTimeList, String filename) throws IOException {
-        try {
-            Document document = newDocument();
-            Element root = document.createElement("workhours");
-            document.appendChild(root);
-            workTimeList.forEach(workTime -> {
-                Element workHourNode = document.createElement("time");
-
-                Element zone = document.createElement("zone");
-                zone.appendChild(document.createTextNode(workTime.getZone()));
-                workHourNode.appendChild(zone);
-
-                Element workday = document.createElement("workday");
-                workday.appendChild(document.createTextNode(workTime.getWorkDayHours()));
-                workHourNode.appendChild(workday);
-
-                Element saturday = document.createElement("saturday");
-                saturday.appendChild(document.createTextNode(workTime.getSaturdayHours()));
-                workHourNode.appendChild(saturday);
-
-                Element sunday = document.createElement("sunday");
-                sunday.appendChild(document.createTextNode(workTime.getSundayHolidayHours()));
-                workHourNode.appendChild(sunday);
-
-                Element holiday = document.createElement("holiday");
-                holiday.appendChild(document.createTextNode(workTime.getSundayHolidayHours()));
-                workHourNode.appendChild(holiday);
-
-                root.appendChild(workHourNode);
-            });
-            write(document, filename);
-        } catch (ParserConfigurationException | TransformerException e ) {
-            throw new IOException("XML configuration error: " + e.getMessage());
-        }
+        write(filename, "workhours", "time", workTimeList, (writer, workTime) -> {
+            writeField(writer, "zone", workTime.getZone());
+            writeField(writer, "workday", workTime.getWorkDayHours());
+            writeField(writer, "saturday", workTime.getSaturdayHours());
+            writeField(writer, "sunday", workTime.getSundayHolidayHours());
+            writeField(writer, "holiday", workTime.getSundayHolidayHours());
+        });
     }
 
     @Override
     public void storeLocations(List<ParkingLocation> locations, String filename) throws IOException {
-        try {
-            Document document = newDocument();
-            Element root = document.createElement("parkinglocations");
-            document.appendChild(root);
-            locations.forEach(location -> {
-                Element locationNode = document.createElement("location");
-
-                Element zone = document.createElement("zone");
-                zone.appendChild(document.createTextNode(location.getZone()));
-                locationNode.appendChild(zone);
-
-                Element city = document.createElement("city");
-                city.appendChild(document.createTextNode(location.getCity()));
-                locationNode.appendChild(city);
-
-                Element address = document.createElement("address");
-                address.appendChild(document.createTextNode(location.getAddress()));
-                locationNode.appendChild(address);
+        write(filename, "parkinglocations", "location", locations, (writer, location) -> {
+            writeField(writer, "zone", location.getZone());
+            writeField(writer, "city", location.getCity());
+            writeField(writer, "address", location.getAddress());
+        });
+    }
 
-                root.appendChild(locationNode);
-            });
-            write(document, filename);
-        } catch (ParserConfigurationException | TransformerException e ) {
-            throw new IOException("XML configuration error: " + e.getMessage());
+    private <T> void write(String filename, String rootName, String itemName, List<T> items,
+                           RecordWriter<T> recordWriter) throws IOException {
+        try (OutputStream out = newOutputStream(filename)) {
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, ENCODING);
+            try {
+                writer.writeStartDocument(ENCODING, "1.0");
+                writer.writeCharacters(System.lineSeparator());
+                writer.writeStartElement(rootName);
+
+                for (T item : items) {
+                    newLine(writer, 1);
+                    writer.writeStartElement(itemName);
+                    recordWriter.write(writer, item);
+                    newLine(writer, 1);
+                    writer.writeEndElement();
+                }
+
+                newLine(writer, 0);
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.writeCharacters(System.lineSeparator());
+                writer.flush();
+            } finally {
+                writer.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("XML write error: " + e.getMessage(), e);
         }
     }
 
-    private Document newDocument() throws ParserConfigurationException {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.newDocument();
+    private static void writeField(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        newLine(writer, 2);
+        writer.writeStartElement(name);
+        writer.writeCharacters(value == null ? "" : value);
+        writer.writeEndElement();
     }
 
-    private Transformer newTransformer() throws TransformerConfigurationException {
-        TransformerFactory factory = TransformerFactory.newInstance();
-        Transformer transformer = factory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-        return transformer;
+    private static void newLine(XMLStreamWriter writer, int depth) throws XMLStreamException {
+        writer.writeCharacters(System.lineSeparator());
+        for (int i = 0; i < depth; i++) {
+            writer.writeCharacters(INDENT);
+        }
     }
 
-    private void write(Document document, String filename) throws TransformerException {
-        Transformer transformer = newTransformer();
-        DOMSource source = new DOMSource(document);
-        StreamResult sr = new StreamResult(new File(getDirPath() + filename));
-        transformer.transform(source, sr);
+    @FunctionalInterface
+    private interface RecordWriter<T> {
+        void write(XMLStreamWriter writer, T item) throws XMLStreamException;
     }
 }
@@ -0,0 +1,38 @@
+package mm.parking.watch;
+
+import java.io.IOException;
+
+/**
+ * Periodically refreshed dataset. The refresh itself decides whether anything changed
+ * and needs to be written, see {@link mm.parking.storage.FingerprintStore}.
+ *
+ * Meant to be scheduled with a fixed delay, a run never throws so a failed refresh
+ * does not cancel the following ones.
+ */
+public class DatasetWatcher implements Runnable {
+    private final String name;
+    private final Refresh refresh;
+
+    public DatasetWatcher(String name, Refresh refresh) {
+        this.name = name;
+        this.refresh = refresh;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void run() {
+        try {
+            refresh.run();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error occurred (" + name + "): " + e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    public interface Refresh {
+        void run() throws IOException;
+    }
+}